@@ -0,0 +1,146 @@
+package com.example.meme.benchmark;
+
+import com.example.meme.model.OutputFormat;
+import com.example.meme.util.ImageEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 输出编码基准测试
+ * 对比 PNG、PNG8（可选抖动）和 JPEG 的编码耗时；编码体积在准备阶段写入日志（"编码体积: ..."），
+ * 用于权衡体积与耗时。输入为固定种子生成的合成图片：flat 为纯色背景 + 色块 + 描边文字，photo 为渐变 + 噪声
+ *
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Djmh.args="EncodeBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Slf4j
+public class EncodeBenchmark {
+
+    /**
+     * 输出模式：png、png8、png8-dither、jpeg
+     */
+    @Param({"png", "png8", "png8-dither", "jpeg"})
+    private String mode;
+
+    /**
+     * 图片内容：flat（表情包常见的纯色背景加文字）或 photo（照片类）
+     */
+    @Param({"flat", "photo"})
+    private String content;
+
+    /**
+     * 图片尺寸（宽x高）
+     */
+    @Param({"1328x1328"})
+    private String size;
+
+    private ImageEncoder encoder;
+
+    private OutputFormat format;
+
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        image = "flat".equals(content) ? flatImage(width, height) : photoImage(width, height);
+
+        encoder = new ImageEncoder();
+        ReflectionTestUtils.setField(encoder, "png8Dither", mode.endsWith("-dither"));
+        format = OutputFormat.fromCode(mode.replace("-dither", ""));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(image, format, out);
+        log.info("编码体积: mode={} content={} size={} -> {} bytes", mode, content, size, out.size());
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        encoder.encode(image, format, out);
+        return out.size();
+    }
+
+    /**
+     * 纯色背景、几块色块和带描边的文字（与合成后的表情包类似，颜色数少但有抗锯齿边缘）
+     */
+    static BufferedImage flatImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(new Color(250, 236, 200));
+        g2d.fillRect(0, 0, width, height);
+        g2d.setColor(new Color(255, 204, 0));
+        g2d.fillOval(width / 4, height / 5, width / 2, width / 2);
+        g2d.setColor(Color.BLACK);
+        g2d.fillOval(width * 2 / 5, height / 3, width / 20, width / 12);
+        g2d.fillOval(width * 11 / 20, height / 3, width / 20, width / 12);
+        g2d.setStroke(new BasicStroke(width / 80f));
+        g2d.drawArc(width * 3 / 8, height / 3, width / 4, width / 4, 200, 140);
+
+        Font font = new Font(Font.DIALOG, Font.BOLD, width / 12);
+        String[] lines = {"WHEN THE BUILD", "FINALLY PASSES"};
+        for (int i = 0; i < lines.length; i++) {
+            TextLayout layout = new TextLayout(lines[i], font, g2d.getFontRenderContext());
+            float x = (float) (width - layout.getAdvance()) / 2;
+            float y = i == 0 ? height / 8f : height * 15 / 16f;
+            Shape outline = layout.getOutline(AffineTransform.getTranslateInstance(x, y));
+            g2d.setColor(Color.BLACK);
+            g2d.fill(new BasicStroke(width / 120f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND).createStrokedShape(outline));
+            g2d.setColor(Color.WHITE);
+            g2d.fill(outline);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * 渐变叠加正弦纹理和随机噪声，颜色数多（与 AI 生成的照片类图片类似）
+     */
+    static BufferedImage photoImage(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (int) (128 + 100 * Math.sin(x / 70.0) * Math.cos(y / 90.0)) + random.nextInt(16);
+                int g = x * 200 / width + random.nextInt(16);
+                int b = y * 200 / height + random.nextInt(16);
+                image.setRGB(x, y, 0xFF000000 | Math.min(255, r) << 16 | Math.min(255, g) << 8 | Math.min(255, b));
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.meme.benchmark;
+
+import com.example.meme.model.FilterType;
+import com.example.meme.service.FilterService;
+import com.example.meme.util.PixelBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 滤镜基准测试
+ * 覆盖所有滤镜类型、常见尺寸（含 qwen-image 输出尺寸）和输入图片类型，输入为固定种子生成的合成图片，无需网络
+ *
+ * 运行：mvn -Pbenchmark test-compile exec:exec
+ * 只跑部分组合：mvn -Pbenchmark test-compile exec:exec -Djmh.args="FilterBenchmark -p size=1328x1328 -p filter=WARM"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    /**
+     * 滤镜类型（不指定取值时 JMH 遍历全部枚举值）
+     */
+    @Param
+    private FilterType filter;
+
+    /**
+     * 图片尺寸（宽x高）
+     */
+    @Param({"512x512", "1328x1328", "1664x928", "4000x3000"})
+    private String size;
+
+    /**
+     * 输入图片类型：ARGB 直接读取栅格，RGB 和 GRAY 需要先转换为 ARGB
+     */
+    @Param({"ARGB", "RGB", "GRAY"})
+    private String imageType;
+
+    /**
+     * 是否开启并行滤镜
+     */
+    @Param({"false"})
+    private boolean parallel;
+
+    /**
+     * 是否使用像素缓冲池（与线上一致，结果用完即归还）
+     */
+    @Param({"true"})
+    private boolean pooled;
+
+    private FilterService filterService;
+
+    private PixelBufferPool bufferPool;
+
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        image = syntheticImage(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), imageType);
+
+        filterService = new FilterService();
+        ReflectionTestUtils.setField(filterService, "parallelEnabled", parallel);
+        if (pooled) {
+            bufferPool = new PixelBufferPool();
+            ReflectionTestUtils.setField(filterService, "bufferPool", bufferPool);
+        }
+        filterService.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        filterService.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage applyFilter() {
+        BufferedImage result = filterService.applyFilter(image, filter);
+        if (bufferPool != null && result != image) {
+            bufferPool.release(result);
+        }
+        return result;
+    }
+
+    /**
+     * 生成合成图片：水平/垂直渐变叠加随机噪声，固定种子保证每次运行输入一致
+     */
+    static BufferedImage syntheticImage(int width, int height, String type) {
+        Random random = new Random(42);
+        switch (type) {
+            case "GRAY": {
+                BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+                byte[] data = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        data[y * width + x] = (byte) ((x * 255 / width + random.nextInt(32)) & 0xFF);
+                    }
+                }
+                return gray;
+            }
+            case "RGB":
+            case "ARGB": {
+                boolean alpha = "ARGB".equals(type);
+                BufferedImage rgb = new BufferedImage(width, height,
+                        alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+                int[] data = ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData();
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int r = x * 255 / width;
+                        int g = y * 255 / height;
+                        int b = random.nextInt(256);
+                        int a = alpha ? 128 + random.nextInt(128) : 0xFF;
+                        data[y * width + x] = (a << 24) | (r << 16) | (g << 8) | b;
+                    }
+                }
+                return rgb;
+            }
+            default:
+                throw new IllegalArgumentException("未知的图片类型: " + type);
+        }
+    }
+}
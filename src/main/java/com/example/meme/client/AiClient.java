@@ -58,7 +58,7 @@ public class AiClient {
      * 使用多模态对话 API 支持图片理解
      * 
      * @param imageBase64 图片的 Base64 编码
-     * @return 图片理解结果，包含描述
+     * @return 图片理解结果，包含描述；调用或解析失败时返回模拟结果（{@link ImageUnderstandResult#isFallback()} 为 true）
      */
     public ImageUnderstandResult understandImage(String imageBase64) {
         try {
@@ -126,7 +126,7 @@ public class AiClient {
     }
     
     /**
-     * 获取模拟结果（用于测试或 API 不可用时）
+     * 获取模拟结果（用于测试或 API 不可用时），标记为 fallback
      */
     private ImageUnderstandResult getMockResult() {
         // 随机返回一些示例文案
@@ -137,7 +137,9 @@ public class AiClient {
             "一张搞笑的图片"
         };
         String randomText = mockTexts[(int) (Math.random() * mockTexts.length)];
-        return new ImageUnderstandResult(randomText, "描述");
+        ImageUnderstandResult result = new ImageUnderstandResult(randomText, "描述");
+        result.setFallback(true);
+        return result;
     }
     
     /**
@@ -149,8 +151,20 @@ public class AiClient {
      * @return 生成的图片结果
      */
     public ImageGenerateResult generateEmotionImage(String imageBase64, EmotionType emotionType) {
-        // 先理解原图内容
+        // 先理解原图内容，再根据描述生成
         ImageUnderstandResult understandResult = understandImage(imageBase64);
+        return synthesizeEmotionImage(understandResult, emotionType);
+    }
+    
+    /**
+     * 根据原图的理解结果生成表情图片
+     * 支持多模型自动切换，当某个模型失败时自动尝试下一个，结果中记录实际使用的模型
+     * 
+     * @param understandResult 原图理解结果
+     * @param emotionType 情绪类型
+     * @return 生成的图片结果
+     */
+    public ImageGenerateResult synthesizeEmotionImage(ImageUnderstandResult understandResult, EmotionType emotionType) {
         String description = understandResult.getDescription();
         
         // 构建图像生成提示词
@@ -169,6 +183,7 @@ public class AiClient {
                 
                 if (result != null && result.getImageUrl() != null && !result.getImageUrl().isEmpty()) {
                     log.info("模型 {} 生成成功", model);
+                    result.setModel(model);
                     return result;
                 }
                 
@@ -249,6 +264,13 @@ public class AiClient {
         }
     }
     
+    /**
+     * 图片生成模型配置（模型列表和尺寸），用作 AI 结果缓存键的一部分，配置变化后旧结果不再命中
+     */
+    public String getImageModelSignature() {
+        return String.join(",", getImageModels()) + "@" + imageSize;
+    }
+    
     /**
      * 获取图片生成模型列表
      */
@@ -3,6 +3,7 @@ package com.example.meme.config;
 import com.example.meme.interceptor.LoggingInterceptor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -22,6 +23,12 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private LoggingInterceptor loggingInterceptor;
     
+    /**
+     * AI 结果缓存目录（位于 output 下时不对外提供访问）
+     */
+    @Value("${ai-cache.dir:ai-cache}")
+    private String aiCacheDir = "ai-cache";
+    
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // 获取项目根目录
@@ -36,6 +43,11 @@ public class WebConfig implements WebMvcConfigurer {
                 .addResourceLocations(fileUrl);
         
         log.info("静态资源映射: /output/** -> {}", fileUrl);
+        
+        // AI 结果缓存目录不对外提供访问（不设置资源位置，匹配更具体的路径时返回 404）
+        if (!Paths.get(aiCacheDir).isAbsolute()) {
+            registry.addResourceHandler("/output/" + aiCacheDir + "/**");
+        }
     }
     
     @Override
@@ -1,21 +1,39 @@
 package com.example.meme.controller;
 
 import com.example.meme.annotation.LogRequest;
+import com.example.meme.model.EmotionImageResult;
 import com.example.meme.model.EmotionType;
+import com.example.meme.model.FilterChain;
+import com.example.meme.model.FilterPreviewSheet;
 import com.example.meme.model.FilterType;
 import com.example.meme.model.GalleryImage;
+import com.example.meme.model.GenerationEvent;
+import com.example.meme.model.GenerationJob;
+import com.example.meme.model.OutputFormat;
+import com.example.meme.model.TextLayer;
+import com.example.meme.service.AiResultCache;
+import com.example.meme.service.FontRegistry;
+import com.example.meme.service.GenerationCoalescer;
+import com.example.meme.service.GenerationJobService;
+import com.example.meme.service.ImageComposeService;
 import com.example.meme.service.ImageGalleryService;
 import com.example.meme.service.MemeService;
 import com.example.meme.util.ByteArrayMultipartFile;
+import com.example.meme.util.PixelBufferPool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 表情包生成控制器
@@ -33,6 +51,24 @@ public class MemeController {
     @Autowired
     private ImageGalleryService imageGalleryService;
     
+    @Autowired
+    private PixelBufferPool bufferPool;
+    
+    @Autowired
+    private ImageComposeService imageComposeService;
+    
+    @Autowired
+    private FontRegistry fontRegistry;
+    
+    @Autowired
+    private GenerationJobService generationJobService;
+    
+    @Autowired
+    private GenerationCoalescer generationCoalescer;
+    
+    @Autowired
+    private AiResultCache aiResultCache;
+    
     /**
      * 生成情绪表情图片接口
      * 
@@ -40,7 +76,11 @@ public class MemeController {
      * @param emotion 情绪类型（happy, sad, angry, surprised, confused, excited, calm, shy）
      * @param text 自定义文字（可选），如果提供，会将文字绘制到生成的图片上
      * @param textStyle 文字样式JSON（可选），格式：{"textColor":"255,255,255","strokeColor":"0,0,0","fontSize":40,"position":"center",...}
-     * @param filter 滤镜类型（可选），none, grayscale, vintage, bright, dark, warm, cool, sepia, contrast, saturate
+     * @param layers 文字图层JSON数组（可选），如 [{"text":"上方文字","position":"top"},{"text":"下方文字","position":"bottom","style":{...}}]，
+     *               所有图层在一次绘制中完成；同时提供 text 时 text 作为最后一个图层
+     * @param filter 滤镜类型（可选），none, grayscale, vintage, bright, dark, warm, cool, sepia, contrast, saturate, blur, sharpen, vignette；
+     *               多个滤镜用逗号分隔按顺序叠加，如 warm,contrast，可用冒号指定强度，如 warm:0.5
+     * @param format 输出格式（可选），auto（默认，不透明图片输出 JPEG，含透明像素输出 PNG）、jpeg、png、png8（256 色索引 PNG）
      * @return 生成结果，包含图片 URL
      */
     @PostMapping("/generate")
@@ -50,7 +90,9 @@ public class MemeController {
             @RequestParam(value = "emotion", defaultValue = "happy") String emotion,
             @RequestParam(value = "text", required = false) String text,
             @RequestParam(value = "textStyle", required = false) String textStyle,
-            @RequestParam(value = "filter", required = false) String filter) {
+            @RequestParam(value = "layers", required = false) String layers,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "format", required = false) String format) {
         
         Map<String, Object> response = new HashMap<>();
         
@@ -63,11 +105,15 @@ public class MemeController {
                 emotionType = EmotionType.HAPPY; // 默认使用高兴
             }
             
-            // 解析滤镜类型
-            FilterType filterType = FilterType.fromCode(filter);
+            // 解析滤镜链
+            FilterChain filterChain = FilterChain.parse(filter);
+            
+            // 解析文字图层
+            List<TextLayer> textLayers = memeService.resolveTextLayers(text, textStyle, layers);
             
             // 调用服务生成情绪表情图片
-            String imageUrl = memeService.generateEmotionImage(image, emotionType, text, textStyle, filterType);
+            String imageUrl = memeService.generateEmotionImage(image, emotionType, textLayers, filterChain,
+                    OutputFormat.fromCode(format));
             
             response.put("success", true);
             response.put("message", emotionType.getChineseName() + "表情图片生成成功");
@@ -95,6 +141,194 @@ public class MemeController {
         }
     }
     
+    /**
+     * 批量生成多种情绪的表情图片接口
+     * 同一张图片只上传、理解一次，各情绪并发生成；某个情绪失败只在该情绪的结果中说明，不影响其他情绪
+     * 
+     * @param image 上传的图片文件
+     * @param emotions 情绪类型，逗号分隔，如 happy,sad,angry
+     * @return 每个情绪的生成结果（顺序与 emotions 一致）及成功、失败数量
+     */
+    @PostMapping("/generate-batch")
+    @LogRequest("批量生成表情包")
+    public ResponseEntity<Map<String, Object>> generateBatch(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("emotions") String emotions,
+            @RequestParam(value = "text", required = false) String text,
+            @RequestParam(value = "textStyle", required = false) String textStyle,
+            @RequestParam(value = "layers", required = false) String layers,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "format", required = false) String format) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            List<EmotionType> emotionTypes = memeService.resolveEmotions(emotions);
+            FilterChain filterChain = FilterChain.parse(filter);
+            List<TextLayer> textLayers = memeService.resolveTextLayers(text, textStyle, layers);
+            
+            List<EmotionImageResult> results = memeService.generateEmotionImages(image, emotionTypes, textLayers,
+                    filterChain, OutputFormat.fromCode(format));
+            
+            List<Map<String, Object>> items = new ArrayList<>();
+            int succeeded = 0;
+            for (EmotionImageResult result : results) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("emotion", result.getEmotionType().getEnglishName());
+                item.put("emotionName", result.getEmotionType().getChineseName());
+                item.put("success", result.isSuccess());
+                item.put("imageUrl", result.getImageUrl());
+                item.put("message", result.getMessage());
+                items.add(item);
+                if (result.isSuccess()) {
+                    succeeded++;
+                }
+            }
+            
+            response.put("success", succeeded > 0);
+            response.put("message", succeeded == results.size()
+                    ? "全部生成成功" : "成功 " + succeeded + " 个，失败 " + (results.size() - succeeded) + " 个");
+            response.put("results", items);
+            response.put("succeeded", succeeded);
+            response.put("failed", results.size() - succeeded);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (Exception e) {
+            log.error("批量生成表情包失败: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "批量生成失败: " + e.getMessage());
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * 提交异步生成任务接口
+     * 参数与 /generate 相同（也可以用 imageUrl 指定图库图片），立即返回任务 ID，生成在后台线程池中进行，
+     * 通过 GET /api/meme/jobs/{id} 轮询状态和结果
+     * 
+     * @param image 上传的图片文件（与 imageUrl 二选一）
+     * @param imageUrl 图库图片 URL（与 image 二选一）
+     * @return 任务 ID 和状态查询地址；线程池和等待队列已满时返回 503
+     */
+    @PostMapping("/jobs")
+    @LogRequest("提交生成任务")
+    public ResponseEntity<Map<String, Object>> submitJob(
+            @RequestParam(value = "image", required = false) MultipartFile image,
+            @RequestParam(value = "imageUrl", required = false) String imageUrl,
+            @RequestParam(value = "emotion", defaultValue = "happy") String emotion,
+            @RequestParam(value = "text", required = false) String text,
+            @RequestParam(value = "textStyle", required = false) String textStyle,
+            @RequestParam(value = "layers", required = false) String layers,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "format", required = false) String format) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            // 解析情绪类型
+            EmotionType emotionType;
+            try {
+                emotionType = EmotionType.fromEnglishName(emotion);
+            } catch (Exception e) {
+                emotionType = EmotionType.HAPPY;
+            }
+            
+            FilterChain filterChain = FilterChain.parse(filter);
+            List<TextLayer> textLayers = memeService.resolveTextLayers(text, textStyle, layers);
+            OutputFormat outputFormat = OutputFormat.fromCode(format);
+            
+            GenerationJob job = image != null && !image.isEmpty()
+                    ? generationJobService.submit(image, emotionType, textLayers, filterChain, outputFormat)
+                    : generationJobService.submit(imageUrl, emotionType, textLayers, filterChain, outputFormat);
+            
+            response.put("success", true);
+            response.put("jobId", job.getId());
+            response.put("status", job.getStatus().getCode());
+            response.put("statusUrl", "/api/meme/jobs/" + job.getId());
+            
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (RejectedExecutionException e) {
+            // 线程池和等待队列已满
+            response.put("success", false);
+            response.put("message", "当前生成任务过多，请稍后重试");
+            
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            
+        } catch (Exception e) {
+            log.error("提交生成任务失败: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "提交生成任务失败: " + e.getMessage());
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * 查询异步生成任务
+     * 
+     * @param id 任务 ID
+     * @return 任务状态（pending, running, succeeded, failed）和最近完成的阶段，成功时包含图片 URL，失败时包含原因；
+     *         任务不存在或已过期时返回 404
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable("id") String id) {
+        Map<String, Object> response = new HashMap<>();
+        
+        GenerationJob job = generationJobService.getJob(id);
+        if (job == null) {
+            response.put("success", false);
+            response.put("message", "任务不存在或已过期");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        
+        GenerationEvent lastEvent = job.getLastEvent();
+        
+        response.put("success", true);
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus().getCode());
+        response.put("stage", lastEvent != null ? lastEvent.getStage() : null);
+        response.put("emotion", job.getEmotionType().getChineseName());
+        response.put("imageUrl", job.getImageUrl());
+        response.put("message", job.getMessage());
+        response.put("createdAt", job.getCreatedAt());
+        response.put("finishedAt", job.getFinishedAt() > 0 ? job.getFinishedAt() : null);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 订阅异步生成任务的进度（Server-Sent Events）
+     * 每完成一个阶段推送一个事件（validated, understood, synthesized, filtered, composed, stored），
+     * synthesized 事件的 detail 为实际使用的模型；任务结束时推送 done 事件（包含结果）后关闭连接。
+     * 订阅前已发生的事件会先补发，任务已结束时只补发事件和结果
+     * 
+     * @param id 任务 ID
+     * @return 事件流，任务不存在或已过期时返回 404
+     */
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobEvents(@PathVariable("id") String id) {
+        SseEmitter emitter = generationJobService.subscribe(id);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+    
     /**
      * 获取所有支持的情绪类型
      */
@@ -136,6 +370,85 @@ public class MemeController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * 获取当前环境可用的字体
+     * 返回白名单中已安装的字体、默认字体和随应用打包的字体，请求中的字体不可用时使用默认字体
+     */
+    @GetMapping("/fonts")
+    @LogRequest("获取可用字体")
+    public ResponseEntity<Map<String, Object>> getFonts() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("fonts", fontRegistry.getAvailableFonts());
+        response.put("default", fontRegistry.getDefaultFont());
+        response.put("bundled", fontRegistry.getBundledFonts());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 滤镜预览拼图接口
+     * 在小尺寸缩略图上一次渲染所有滤镜，返回一张拼图及每个滤镜所在的格子位置
+     * 
+     * @param image 上传的图片文件（与 imageUrl 二选一）
+     * @param imageUrl 已生成结果的图片 URL（如 /output/meme_xxx.png）
+     * @param tileSize 格子边长（可选，32-256，默认 128）
+     * @return 拼图 URL 和格子布局
+     */
+    @PostMapping("/filters/preview")
+    @LogRequest("生成滤镜预览")
+    public ResponseEntity<Map<String, Object>> previewFilters(
+            @RequestParam(value = "image", required = false) MultipartFile image,
+            @RequestParam(value = "imageUrl", required = false) String imageUrl,
+            @RequestParam(value = "tileSize", required = false) Integer tileSize) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            FilterPreviewSheet sheet = memeService.generateFilterPreview(image, imageUrl, tileSize);
+            
+            response.put("success", true);
+            response.put("imageUrl", sheet.getImageUrl());
+            response.put("tileSize", sheet.getTileSize());
+            response.put("columns", sheet.getColumns());
+            response.put("rows", sheet.getRows());
+            response.put("tiles", sheet.getTiles());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("imageUrl", null);
+            
+            return ResponseEntity.badRequest().body(response);
+            
+        } catch (Exception e) {
+            log.error("生成滤镜预览失败: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "生成滤镜预览失败: " + e.getMessage());
+            response.put("imageUrl", null);
+            
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+    
+    /**
+     * 运行指标接口
+     * 返回像素缓冲池的命中、未命中、淘汰次数和当前占用，文字排版缓存和文字精灵缓存的命中情况，异步生成任务的统计，相同请求的合并次数，以及 AI 结果缓存的命中情况
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("bufferPool", bufferPool.getStats());
+        response.put("layoutCache", imageComposeService.getLayoutCacheStats());
+        response.put("spriteCache", imageComposeService.getSpriteCacheStats());
+        response.put("jobs", generationJobService.getStats());
+        response.put("coalescing", generationCoalescer.getStats());
+        response.put("aiCache", aiResultCache.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * 健康检查接口
      */
@@ -272,7 +585,9 @@ public class MemeController {
      * @param emotion 情绪类型
      * @param text 自定义文字
      * @param textStyle 文字样式
-     * @param filter 滤镜类型
+     * @param layers 文字图层JSON数组（可选）
+     * @param filter 滤镜类型，支持逗号分隔的滤镜链
+     * @param format 输出格式（可选），auto、jpeg、png、png8
      * @return 生成结果
      */
     @PostMapping("/generate-from-gallery")
@@ -282,7 +597,9 @@ public class MemeController {
             @RequestParam(value = "emotion", defaultValue = "happy") String emotion,
             @RequestParam(value = "text", required = false) String text,
             @RequestParam(value = "textStyle", required = false) String textStyle,
-            @RequestParam(value = "filter", required = false) String filter) {
+            @RequestParam(value = "layers", required = false) String layers,
+            @RequestParam(value = "filter", required = false) String filter,
+            @RequestParam(value = "format", required = false) String format) {
         
         Map<String, Object> response = new HashMap<>();
         
@@ -306,12 +623,13 @@ public class MemeController {
                 emotionType = EmotionType.HAPPY;
             }
             
-            // 解析滤镜类型
-            FilterType filterType = FilterType.fromCode(filter);
+            // 解析滤镜链
+            FilterChain filterChain = FilterChain.parse(filter);
             
             // 调用生成服务
             String resultUrl = memeService.generateEmotionImage(
-                    multipartFile, emotionType, text, textStyle, filterType);
+                    multipartFile, emotionType, memeService.resolveTextLayers(text, textStyle, layers), filterChain,
+                    OutputFormat.fromCode(format));
             
             response.put("success", true);
             response.put("message", emotionType.getChineseName() + "表情图片生成成功");
@@ -320,6 +638,13 @@ public class MemeController {
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("imageUrl", null);
+            
+            return ResponseEntity.badRequest().body(response);
+            
         } catch (Exception e) {
             log.error("从图库生成表情包失败: {}", e.getMessage(), e);
             response.put("success", false);
@@ -0,0 +1,140 @@
+package com.example.meme.filter;
+
+/**
+ * 方框模糊内核（滑动窗口）
+ * 每个条带维护窗口内各列的通道和，逐行向下滑动时只加入新行、减去旧行；
+ * 每行再沿列和水平滑动求窗口总和，因此每个像素的计算量与半径无关。
+ * 边缘按最近像素延伸，四个通道（含透明度）一起模糊；颜色通道按透明度加权求和（预乘），输出时除以透明度之和，
+ * 完全透明像素（颜色通常为黑色）不会在透明图片的边缘晕出暗边。窗口内全部不透明时结果与直接求平均相同。
+ * 半径按图片短边的比例计算，同一效果在不同尺寸的图片上观感一致。
+ */
+public final class BoxBlurKernel implements PixelKernel {
+
+    /**
+     * 标准强度下半径占短边的比例
+     */
+    public static final double DEFAULT_RADIUS_RATIO = 0.01;
+
+    /**
+     * 半径上限，保证窗口总和不超出 int 范围
+     */
+    public static final int MAX_RADIUS = 255;
+
+    private final double radiusRatio;
+
+    /**
+     * @param radiusRatio 模糊半径占图片短边的比例
+     */
+    public BoxBlurKernel(double radiusRatio) {
+        this.radiusRatio = Math.max(0.0, radiusRatio);
+    }
+
+    /**
+     * 计算指定尺寸图片上的模糊半径
+     */
+    public int radiusFor(int width, int height) {
+        int radius = (int) Math.round(Math.min(width, height) * radiusRatio);
+        return Math.min(MAX_RADIUS, radius);
+    }
+
+    @Override
+    public boolean isPointwise() {
+        return false;
+    }
+
+    @Override
+    public void apply(int[] src, int[] dst, int width, int height, int rowStart, int rowEnd) {
+        int radius = radiusFor(width, height);
+        if (radius == 0) {
+            System.arraycopy(src, rowStart * width, dst, rowStart * width, (rowEnd - rowStart) * width);
+            return;
+        }
+        int diameter = 2 * radius + 1;
+        long area = (long) diameter * diameter;
+        // 用乘法和移位代替除法：(sum + area / 2) * reciprocal >> 32 即四舍五入后的平均值
+        long reciprocal = ((1L << 32) + area - 1) / area;
+        long half = area / 2;
+        long opaque = 255 * area;
+
+        // 透明度的列和；颜色为预乘值 C × A 的列和（最大 255 × 255 × 窗口面积，需要 long）
+        int[] sumA = new int[width];
+        long[] sumR = new long[width];
+        long[] sumG = new long[width];
+        long[] sumB = new long[width];
+
+        // 初始化第一行的纵向窗口 [rowStart - radius, rowStart + radius]
+        for (int k = -radius; k <= radius; k++) {
+            addRow(src, clamp(rowStart + k, height), width, sumA, sumR, sumG, sumB, 1);
+        }
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            // 水平窗口初始值：以第 0 列为中心，左侧越界部分按第 0 列延伸
+            int a = sumA[0] * (radius + 1);
+            long r = sumR[0] * (radius + 1);
+            long g = sumG[0] * (radius + 1);
+            long b = sumB[0] * (radius + 1);
+            for (int k = 1; k <= radius; k++) {
+                int x = Math.min(k, width - 1);
+                a += sumA[x];
+                r += sumR[x];
+                g += sumG[x];
+                b += sumB[x];
+            }
+
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int alpha = average(a, half, reciprocal);
+                if (a == opaque) {
+                    // 窗口内全部不透明：预乘和正好是颜色和的 255 倍
+                    dst[offset + x] = 0xFF000000
+                            | (average((int) (r / 255), half, reciprocal) << 16)
+                            | (average((int) (g / 255), half, reciprocal) << 8)
+                            | average((int) (b / 255), half, reciprocal);
+                } else if (alpha == 0) {
+                    dst[offset + x] = 0;
+                } else {
+                    // 非预乘颜色 = Σ(C × A) / ΣA，面积约去，不受预乘舍入影响
+                    long halfA = a >> 1;
+                    dst[offset + x] = (alpha << 24)
+                            | ((int) ((r + halfA) / a) << 16)
+                            | ((int) ((g + halfA) / a) << 8)
+                            | (int) ((b + halfA) / a);
+                }
+                int in = Math.min(x + radius + 1, width - 1);
+                int out = Math.max(x - radius, 0);
+                a += sumA[in] - sumA[out];
+                r += sumR[in] - sumR[out];
+                g += sumG[in] - sumG[out];
+                b += sumB[in] - sumB[out];
+            }
+
+            // 纵向窗口下移一行
+            if (y + 1 < rowEnd) {
+                addRow(src, clamp(y + radius + 1, height), width, sumA, sumR, sumG, sumB, 1);
+                addRow(src, clamp(y - radius, height), width, sumA, sumR, sumG, sumB, -1);
+            }
+        }
+    }
+
+    private static void addRow(int[] src, int row, int width,
+                               int[] sumA, long[] sumR, long[] sumG, long[] sumB, int sign) {
+        int offset = row * width;
+        for (int x = 0; x < width; x++) {
+            int p = src[offset + x];
+            int a = p >>> 24;
+            int signedA = sign * a;
+            sumA[x] += signedA;
+            sumR[x] += signedA * ((p >> 16) & 0xFF);
+            sumG[x] += signedA * ((p >> 8) & 0xFF);
+            sumB[x] += signedA * (p & 0xFF);
+        }
+    }
+
+    private static int average(int sum, long half, long reciprocal) {
+        return (int) Math.min(255, ((sum + half) * reciprocal) >>> 32);
+    }
+
+    private static int clamp(int row, int height) {
+        return row < 0 ? 0 : (row >= height ? height - 1 : row);
+    }
+}
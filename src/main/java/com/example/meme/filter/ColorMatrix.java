@@ -0,0 +1,87 @@
+package com.example.meme.filter;
+
+/**
+ * 3x3 颜色矩阵
+ * 预先计算每个系数与 0-255 的乘积表，逐像素只做查表和加法，
+ * 求和顺序与 (m0*r + m1*g) + m2*b 一致，因此结果与直接浮点计算逐位相同
+ */
+public final class ColorMatrix {
+
+    /**
+     * 灰度矩阵：三行均为 0.299*R + 0.587*G + 0.114*B
+     */
+    public static final ColorMatrix LUMINANCE = new ColorMatrix(new double[] {
+            0.299, 0.587, 0.114,
+            0.299, 0.587, 0.114,
+            0.299, 0.587, 0.114
+    });
+
+    private static final double[] IDENTITY = {
+            1, 0, 0,
+            0, 1, 0,
+            0, 0, 1
+    };
+
+    private final double[] coefficients;
+
+    /**
+     * 乘积表，products[k][v] = coefficients[k] * v
+     */
+    private final double[][] products;
+
+    /**
+     * 三行系数是否相同（相同时每像素只需计算一次）
+     */
+    private final boolean uniformRows;
+
+    public ColorMatrix(double[] coefficients) {
+        if (coefficients.length != 9) {
+            throw new IllegalArgumentException("颜色矩阵必须包含 9 个系数");
+        }
+        this.coefficients = coefficients.clone();
+        this.products = new double[9][256];
+        for (int k = 0; k < 9; k++) {
+            for (int v = 0; v < 256; v++) {
+                products[k][v] = this.coefficients[k] * v;
+            }
+        }
+        this.uniformRows = sameRow(0, 3) && sameRow(0, 6);
+    }
+
+    /**
+     * 按强度与单位矩阵插值：M' = I + (M - I) * intensity
+     */
+    public ColorMatrix withIntensity(double intensity) {
+        if (intensity == 1.0) {
+            return this;
+        }
+        double[] blended = new double[9];
+        for (int k = 0; k < 9; k++) {
+            blended[k] = IDENTITY[k] + (coefficients[k] - IDENTITY[k]) * intensity;
+        }
+        return new ColorMatrix(blended);
+    }
+
+    public double[] getCoefficients() {
+        return coefficients.clone();
+    }
+
+    public boolean isUniformRows() {
+        return uniformRows;
+    }
+
+    /**
+     * 计算第 row 行的输出通道（截断取整并限制在 0-255）
+     */
+    public int apply(int row, int r, int g, int b) {
+        int base = row * 3;
+        int v = (int) (products[base][r] + products[base + 1][g] + products[base + 2][b]);
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+
+    private boolean sameRow(int a, int b) {
+        return coefficients[a] == coefficients[b]
+                && coefficients[a + 1] == coefficients[b + 1]
+                && coefficients[a + 2] == coefficients[b + 2];
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.meme.filter;
+
+import com.example.meme.model.FilterChain;
+import com.example.meme.model.FilterType;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 滤镜内核
+ * 逐通道独立的滤镜（明亮、暗调、暖色、冷色、高对比、复古）编译为每通道 256 项查找表，
+ * 黑白和怀旧编译为灰度矩阵 + 查找表，编译结果按（滤镜, 强度）缓存复用；高饱和使用整数定点的 {@link SaturateKernel}。
+ * 强度 1.0 时查找表与原浮点公式逐位一致。
+ * 模糊、锐化、暗角与位置或邻域有关，分别使用 {@link BoxBlurKernel}、{@link UnsharpMaskKernel}、{@link VignetteKernel}。
+ * 滤镜链中相邻的查表内核会合成为一个内核，只需遍历一次像素。
+ */
+public final class FilterKernels {
+
+    /**
+     * 默认强度
+     */
+    public static final double DEFAULT_INTENSITY = 1.0;
+
+    /**
+     * 允许的最大强度（大于 1 表示在原效果基础上继续增强）
+     */
+    public static final double MAX_INTENSITY = 2.0;
+
+    /**
+     * 强度量化精度（0.01），用于限制缓存条目数量
+     */
+    private static final int INTENSITY_STEPS = 100;
+
+    private static final Map<Integer, LutKernel> LUT_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 无法编译为查找表的滤镜
+     */
+    private static final EnumSet<FilterType> NON_LUT_FILTERS = EnumSet.of(
+            FilterType.NONE, FilterType.SATURATE, FilterType.BLUR, FilterType.SHARPEN, FilterType.VIGNETTE);
+
+    private FilterKernels() {
+    }
+
+    /**
+     * 获取滤镜对应的内核（默认强度）
+     *
+     * @param filterType 滤镜类型
+     * @return 内核，NONE 或未知类型返回 null
+     */
+    public static PixelKernel forType(FilterType filterType) {
+        return forType(filterType, DEFAULT_INTENSITY);
+    }
+
+    /**
+     * 获取指定强度的滤镜内核
+     *
+     * @param filterType 滤镜类型
+     * @param intensity 强度（0 表示原图，1 表示标准效果，最大 2）
+     * @return 内核，NONE 或未知类型返回 null
+     */
+    public static PixelKernel forType(FilterType filterType, double intensity) {
+        if (filterType == null || filterType == FilterType.NONE) {
+            return null;
+        }
+        double t = (double) quantize(intensity) / INTENSITY_STEPS;
+        switch (filterType) {
+            case SATURATE:
+                // 强度 1 对应标准饱和度 1.5
+                return new SaturateKernel(1.0 + (SaturateKernel.DEFAULT_STRENGTH - 1.0) * t);
+            case BLUR:
+                return new BoxBlurKernel(BoxBlurKernel.DEFAULT_RADIUS_RATIO * t);
+            case SHARPEN:
+                return new UnsharpMaskKernel(UnsharpMaskKernel.DEFAULT_AMOUNT * t);
+            case VIGNETTE:
+                return new VignetteKernel(VignetteKernel.DEFAULT_AMOUNT * t);
+            default:
+                return lutKernel(filterType, intensity);
+        }
+    }
+
+    /**
+     * 编译滤镜链：相邻的查表内核合成为一个，其余内核保持独立
+     *
+     * @param chain 滤镜链
+     * @return 按执行顺序排列的内核列表（空滤镜链返回空列表）
+     */
+    public static List<PixelKernel> compileChain(FilterChain chain) {
+        List<PixelKernel> kernels = new ArrayList<>();
+        LutKernel pending = null;
+        for (FilterChain.Step step : chain.getSteps()) {
+            PixelKernel kernel = forType(step.getType(), step.getIntensity());
+            if (kernel == null) {
+                continue;
+            }
+            if (kernel instanceof LutKernel) {
+                LutKernel lut = (LutKernel) kernel;
+                LutKernel fused = pending != null ? pending.then(lut) : lut;
+                if (fused == null) {
+                    // 两个颜色矩阵无法合成，前一段单独执行
+                    kernels.add(pending);
+                    fused = lut;
+                }
+                pending = fused;
+                continue;
+            }
+            if (pending != null) {
+                kernels.add(pending);
+                pending = null;
+            }
+            kernels.add(kernel);
+        }
+        if (pending != null) {
+            kernels.add(pending);
+        }
+        return kernels;
+    }
+
+    /**
+     * 获取点滤镜编译后的查表内核
+     *
+     * @return 查表内核，无法编译为查找表的滤镜（如高饱和、模糊）返回 null
+     */
+    public static LutKernel lutKernel(FilterType filterType, double intensity) {
+        if (filterType == null || NON_LUT_FILTERS.contains(filterType)) {
+            return null;
+        }
+        int steps = quantize(intensity);
+        int key = filterType.ordinal() * (INTENSITY_STEPS * 10) + steps;
+        return LUT_CACHE.computeIfAbsent(key, k -> compile(filterType, (double) steps / INTENSITY_STEPS));
+    }
+
+    private static int quantize(double intensity) {
+        double clamped = Math.max(0.0, Math.min(MAX_INTENSITY, intensity));
+        return (int) Math.round(clamped * INTENSITY_STEPS);
+    }
+
+    /**
+     * 将滤镜编译为查表内核
+     */
+    private static LutKernel compile(FilterType filterType, double intensity) {
+        switch (filterType) {
+            case GRAYSCALE:
+                return new LutKernel(ColorMatrix.LUMINANCE.withIntensity(intensity),
+                        identityLut(), identityLut(), identityLut());
+            case SEPIA:
+                // 灰度矩阵之后应用棕褐色调
+                return new LutKernel(ColorMatrix.LUMINANCE.withIntensity(intensity),
+                        lut(v -> Math.min(255, (int) (v * 1.2)), intensity),
+                        lut(v -> Math.min(255, (int) (v * 1.0)), intensity),
+                        lut(v -> Math.min(255, (int) (v * 0.8)), intensity));
+            case VINTAGE:
+                // 复古效果：降低饱和度，增加暖色调，并添加轻微黄色调
+                return new LutKernel(null,
+                        lut(v -> Math.min(255, Math.min(255, (int) (v * 1.1)) + 10), intensity),
+                        lut(v -> Math.min(255, (int) (v * 0.95) + 5), intensity),
+                        lut(v -> (int) (v * 0.9), intensity));
+            case BRIGHT:
+                IntUnaryOperator bright = v -> Math.min(255, (int) (v * 1.3));
+                return new LutKernel(null, lut(bright, intensity), lut(bright, intensity), lut(bright, intensity));
+            case DARK:
+                IntUnaryOperator dark = v -> (int) (v * 0.7);
+                return new LutKernel(null, lut(dark, intensity), lut(dark, intensity), lut(dark, intensity));
+            case WARM:
+                // 增强红色和黄色
+                return new LutKernel(null,
+                        lut(v -> Math.min(255, (int) (v * 1.2)), intensity),
+                        lut(v -> Math.min(255, (int) (v * 1.1)), intensity),
+                        lut(v -> (int) (v * 0.95), intensity));
+            case COOL:
+                // 增强蓝色和青色
+                return new LutKernel(null,
+                        lut(v -> (int) (v * 0.95), intensity),
+                        lut(v -> Math.min(255, (int) (v * 1.05)), intensity),
+                        lut(v -> Math.min(255, (int) (v * 1.2)), intensity));
+            case CONTRAST:
+                double contrast = 1.5; // 对比度因子
+                IntUnaryOperator stretch = v -> Math.max(0, Math.min(255, (int) ((v - 128) * contrast + 128)));
+                return new LutKernel(null, lut(stretch, intensity), lut(stretch, intensity), lut(stretch, intensity));
+            default:
+                throw new IllegalArgumentException("滤镜无法编译为查找表: " + filterType);
+        }
+    }
+
+    /**
+     * 生成查找表，按强度在原值与滤镜结果之间插值
+     */
+    private static byte[] lut(IntUnaryOperator function, double intensity) {
+        byte[] table = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            int target = function.applyAsInt(v);
+            int value = intensity == 1.0 ? target : (int) Math.round(v + (target - v) * intensity);
+            table[v] = (byte) Math.max(0, Math.min(255, value));
+        }
+        return table;
+    }
+
+    private static byte[] identityLut() {
+        byte[] table = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = (byte) v;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.meme.filter;
+
+/**
+ * 内核加速器
+ * 为标量内核提供等价的向量化实现，输出必须与标量实现逐位一致
+ */
+public interface KernelAccelerator {
+
+    /**
+     * 向量化实现类，仅在启用 vector 构建 profile 时编译进来
+     */
+    String VECTOR_IMPLEMENTATION = "com.example.meme.filter.vector.VectorKernelAccelerator";
+
+    /**
+     * 获取内核的加速版本
+     *
+     * @param kernel 标量内核
+     * @return 加速后的内核，不支持时返回 null
+     */
+    PixelKernel accelerate(PixelKernel kernel);
+}
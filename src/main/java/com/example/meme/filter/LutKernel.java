@@ -0,0 +1,140 @@
+package com.example.meme.filter;
+
+/**
+ * 查表内核
+ * 结构为：前置查找表 → 可选的颜色矩阵 → 后置查找表，逐像素只做查表运算。
+ * 连续的点滤镜可以通过 {@link #then(LutKernel)} 合成为一个内核，一次遍历完成。
+ */
+public final class LutKernel implements PixelKernel {
+
+    /**
+     * 前置查找表（仅在存在矩阵时使用，可为 null 表示恒等）
+     */
+    private final byte[][] pre;
+    private final ColorMatrix matrix;
+    private final byte[] red;
+    private final byte[] green;
+    private final byte[] blue;
+
+    /**
+     * @param matrix 颜色矩阵（可为 null）
+     * @param red 红色通道查找表
+     * @param green 绿色通道查找表
+     * @param blue 蓝色通道查找表
+     */
+    public LutKernel(ColorMatrix matrix, byte[] red, byte[] green, byte[] blue) {
+        this(null, matrix, red, green, blue);
+    }
+
+    private LutKernel(byte[][] pre, ColorMatrix matrix, byte[] red, byte[] green, byte[] blue) {
+        if (red.length != 256 || green.length != 256 || blue.length != 256) {
+            throw new IllegalArgumentException("查找表必须包含 256 项");
+        }
+        this.pre = matrix != null ? pre : null;
+        this.matrix = matrix;
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+    }
+
+    /**
+     * 前置查找表（RGB 三通道），无前置表时返回 null
+     */
+    public byte[][] getPre() {
+        return pre;
+    }
+
+    public ColorMatrix getMatrix() {
+        return matrix;
+    }
+
+    public byte[] getRed() {
+        return red;
+    }
+
+    public byte[] getGreen() {
+        return green;
+    }
+
+    public byte[] getBlue() {
+        return blue;
+    }
+
+    /**
+     * 与后一个查表内核合成：结果等价于先执行 this 再执行 next
+     * 两个内核都带颜色矩阵时无法合成
+     *
+     * @param next 后执行的内核
+     * @return 合成后的内核，无法合成时返回 null
+     */
+    public LutKernel then(LutKernel next) {
+        if (next.matrix == null) {
+            // 后一个是纯查找表：直接接在当前后置表之后
+            return new LutKernel(pre, matrix,
+                    compose(red, next.red), compose(green, next.green), compose(blue, next.blue));
+        }
+        if (matrix != null) {
+            return null;
+        }
+        // 当前是纯查找表：并入后一个内核的前置表
+        byte[][] nextPre = next.pre;
+        byte[][] fusedPre = {
+                nextPre != null ? compose(red, nextPre[0]) : red,
+                nextPre != null ? compose(green, nextPre[1]) : green,
+                nextPre != null ? compose(blue, nextPre[2]) : blue
+        };
+        return new LutKernel(fusedPre, next.matrix, next.red, next.green, next.blue);
+    }
+
+    /**
+     * 合成两个查找表：result[v] = second[first[v]]
+     */
+    private static byte[] compose(byte[] first, byte[] second) {
+        byte[] table = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = second[first[v] & 0xFF];
+        }
+        return table;
+    }
+
+    @Override
+    public void apply(int[] src, int[] dst, int width, int height, int rowStart, int rowEnd) {
+        byte[] lr = red;
+        byte[] lg = green;
+        byte[] lb = blue;
+        int end = rowEnd * width;
+
+        if (matrix == null) {
+            for (int i = rowStart * width; i < end; i++) {
+                int p = src[i];
+                dst[i] = (p & 0xFF000000)
+                        | ((lr[(p >> 16) & 0xFF] & 0xFF) << 16)
+                        | ((lg[(p >> 8) & 0xFF] & 0xFF) << 8)
+                        | (lb[p & 0xFF] & 0xFF);
+            }
+            return;
+        }
+
+        ColorMatrix m = matrix;
+        boolean uniform = m.isUniformRows();
+        byte[][] preLuts = pre;
+        for (int i = rowStart * width; i < end; i++) {
+            int p = src[i];
+            int r = (p >> 16) & 0xFF;
+            int g = (p >> 8) & 0xFF;
+            int b = p & 0xFF;
+            if (preLuts != null) {
+                r = preLuts[0][r] & 0xFF;
+                g = preLuts[1][g] & 0xFF;
+                b = preLuts[2][b] & 0xFF;
+            }
+            int mr = m.apply(0, r, g, b);
+            int mg = uniform ? mr : m.apply(1, r, g, b);
+            int mb = uniform ? mr : m.apply(2, r, g, b);
+            dst[i] = (p & 0xFF000000)
+                    | ((lr[mr] & 0xFF) << 16)
+                    | ((lg[mg] & 0xFF) << 8)
+                    | (lb[mb] & 0xFF);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.meme.filter;
+
+/**
+ * 像素处理内核
+ * 直接在 TYPE_INT_ARGB 的 int[] 像素数组上按行区间处理，不创建任何中间对象
+ */
+@FunctionalInterface
+public interface PixelKernel {
+
+    /**
+     * 处理 [rowStart, rowEnd) 区间内的行
+     *
+     * @param src 源像素（ARGB，非预乘，按行连续存放）
+     * @param dst 目标像素，与 src 尺寸相同
+     * @param width 图片宽度
+     * @param height 图片高度
+     * @param rowStart 起始行（包含）
+     * @param rowEnd 结束行（不包含）
+     */
+    void apply(int[] src, int[] dst, int width, int height, int rowStart, int rowEnd);
+
+    /**
+     * 输出像素是否只依赖同一位置的输入像素
+     * 逐点内核可以原地执行（src 与 dst 为同一数组）；模糊、锐化等邻域内核需要独立的目标缓冲区
+     */
+    default boolean isPointwise() {
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.meme.filter;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * 栅格工具
+ * 负责把任意 BufferedImage 规整为紧凑的 TYPE_INT_ARGB 像素数组
+ */
+public final class RasterImages {
+
+    private RasterImages() {
+    }
+
+    /**
+     * 创建紧凑存储的 TYPE_INT_ARGB 图片
+     */
+    public static BufferedImage newArgbImage(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * 获取 TYPE_INT_ARGB 图片底层的像素数组（直接引用，不复制）
+     *
+     * @param image 紧凑存储的 TYPE_INT_ARGB 图片
+     * @return 像素数组
+     */
+    public static int[] pixels(BufferedImage image) {
+        if (!isCompactArgb(image)) {
+            throw new IllegalArgumentException("图片不是紧凑的 TYPE_INT_ARGB 格式");
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * 读取图片的 ARGB 像素
+     * 已经是紧凑 TYPE_INT_ARGB 的图片直接返回底层数组，其余类型按 getRGB 语义转换为新数组
+     *
+     * @param image 任意类型的图片
+     * @return ARGB 像素数组（调用方只能读取）
+     */
+    public static int[] argbPixels(BufferedImage image) {
+        if (isCompactArgb(image)) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // 批量 getRGB 与逐像素 getRGB 使用相同的颜色模型转换，结果一致
+        return image.getRGB(0, 0, width, height, new int[width * height], 0, width);
+    }
+
+    /**
+     * 生成正方形缩略图：按短边缩放铺满后居中裁剪
+     * 大图先逐级减半再缩放到目标尺寸，避免一次双线性缩放造成的锯齿
+     *
+     * @param image 原图
+     * @param size 缩略图边长
+     * @return TYPE_INT_ARGB 缩略图
+     */
+    public static BufferedImage squareThumbnail(BufferedImage image, int size) {
+        BufferedImage current = image;
+        int shortSide = Math.min(current.getWidth(), current.getHeight());
+        while (shortSide / 2 >= size * 2) {
+            int width = Math.max(1, current.getWidth() / 2);
+            int height = Math.max(1, current.getHeight() / 2);
+            current = scale(current, width, height, 0, 0, current.getWidth(), current.getHeight());
+            shortSide = Math.min(width, height);
+        }
+        int cropX = (current.getWidth() - shortSide) / 2;
+        int cropY = (current.getHeight() - shortSide) / 2;
+        return scale(current, size, size, cropX, cropY, cropX + shortSide, cropY + shortSide);
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height,
+                                       int sx1, int sy1, int sx2, int sy2) {
+        BufferedImage target = newArgbImage(width, height);
+        Graphics2D g2d = target.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, width, height, sx1, sy1, sx2, sy2, null);
+        g2d.dispose();
+        return target;
+    }
+
+    /**
+     * 判断图片是否为紧凑的 TYPE_INT_ARGB（无子图偏移、行跨度等于宽度）
+     */
+    public static boolean isCompactArgb(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return false;
+        }
+        WritableRaster raster = image.getRaster();
+        if (!(raster.getDataBuffer() instanceof DataBufferInt)
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return false;
+        }
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        return buffer.getNumBanks() == 1
+                && buffer.getOffset() == 0
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && sampleModel.getScanlineStride() == image.getWidth()
+                && buffer.getSize() == image.getWidth() * image.getHeight();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.meme.filter;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 行条带并行任务
+ * 将 [rowStart, rowEnd) 二分拆分，直到行数不超过 grainRows 再交给内核处理
+ */
+public class RowStripeTask extends RecursiveAction {
+
+    private final PixelKernel kernel;
+    private final int[] src;
+    private final int[] dst;
+    private final int width;
+    private final int height;
+    private final int rowStart;
+    private final int rowEnd;
+    private final int grainRows;
+
+    public RowStripeTask(PixelKernel kernel, int[] src, int[] dst, int width, int height,
+                         int rowStart, int rowEnd, int grainRows) {
+        this.kernel = kernel;
+        this.src = src;
+        this.dst = dst;
+        this.width = width;
+        this.height = height;
+        this.rowStart = rowStart;
+        this.rowEnd = rowEnd;
+        this.grainRows = Math.max(1, grainRows);
+    }
+
+    @Override
+    protected void compute() {
+        if (rowEnd - rowStart <= grainRows) {
+            kernel.apply(src, dst, width, height, rowStart, rowEnd);
+            return;
+        }
+        int middle = (rowStart + rowEnd) >>> 1;
+        invokeAll(
+                new RowStripeTask(kernel, src, dst, width, height, rowStart, middle, grainRows),
+                new RowStripeTask(kernel, src, dst, width, height, middle, rowEnd, grainRows)
+        );
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.meme.filter;
+
+import java.util.Arrays;
+
+/**
+ * 锐化内核（反锐化掩模）
+ * 先用可分离的 5 阶二项式核 [1 4 6 4 1] / 16 做模糊：每行先纵向卷积到行缓冲区，再在行缓冲区上横向卷积，
+ * 每个像素只需 2 × 5 次乘加而不是 25 次；然后按 C' = C + (C - 模糊) × amount 放大细节。
+ * 行缓冲区两端按边缘像素填充，横向卷积不需要逐像素判断越界；透明度保持不变。
+ */
+public final class UnsharpMaskKernel implements PixelKernel {
+
+    /**
+     * 标准强度下的锐化量
+     */
+    public static final double DEFAULT_AMOUNT = 1.0;
+
+    private static final int[] WEIGHTS = {1, 4, 6, 4, 1};
+    private static final int RADIUS = WEIGHTS.length / 2;
+
+    /**
+     * 两次卷积的权重和为 16 × 16，模糊结果右移 8 位
+     */
+    private static final int BLUR_SHIFT = 8;
+
+    private final int amountQ8;
+
+    /**
+     * @param amount 锐化量，0 为原图
+     */
+    public UnsharpMaskKernel(double amount) {
+        this.amountQ8 = (int) Math.round(Math.max(0.0, amount) * 256);
+    }
+
+    @Override
+    public boolean isPointwise() {
+        return false;
+    }
+
+    @Override
+    public void apply(int[] src, int[] dst, int width, int height, int rowStart, int rowEnd) {
+        int padded = width + 2 * RADIUS;
+        int[] rowR = new int[padded];
+        int[] rowG = new int[padded];
+        int[] rowB = new int[padded];
+        int amount = amountQ8;
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            // 纵向卷积，结果写入行缓冲区 [RADIUS, RADIUS + width)
+            Arrays.fill(rowR, 0);
+            Arrays.fill(rowG, 0);
+            Arrays.fill(rowB, 0);
+            for (int k = 0; k < WEIGHTS.length; k++) {
+                int row = y + k - RADIUS;
+                int offset = (row < 0 ? 0 : (row >= height ? height - 1 : row)) * width;
+                int weight = WEIGHTS[k];
+                for (int x = 0; x < width; x++) {
+                    int p = src[offset + x];
+                    rowR[RADIUS + x] += weight * ((p >> 16) & 0xFF);
+                    rowG[RADIUS + x] += weight * ((p >> 8) & 0xFF);
+                    rowB[RADIUS + x] += weight * (p & 0xFF);
+                }
+            }
+            // 两端按边缘像素填充
+            for (int k = 0; k < RADIUS; k++) {
+                rowR[k] = rowR[RADIUS];
+                rowG[k] = rowG[RADIUS];
+                rowB[k] = rowB[RADIUS];
+                rowR[RADIUS + width + k] = rowR[RADIUS + width - 1];
+                rowG[RADIUS + width + k] = rowG[RADIUS + width - 1];
+                rowB[RADIUS + width + k] = rowB[RADIUS + width - 1];
+            }
+
+            // 横向卷积并与原像素合成
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int blurR = 0;
+                int blurG = 0;
+                int blurB = 0;
+                for (int k = 0; k < WEIGHTS.length; k++) {
+                    int weight = WEIGHTS[k];
+                    blurR += weight * rowR[x + k];
+                    blurG += weight * rowG[x + k];
+                    blurB += weight * rowB[x + k];
+                }
+                int p = src[offset + x];
+                int r = sharpen((p >> 16) & 0xFF, blurR, amount);
+                int g = sharpen((p >> 8) & 0xFF, blurG, amount);
+                int b = sharpen(p & 0xFF, blurB, amount);
+                dst[offset + x] = (p & 0xFF000000) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private static int sharpen(int value, int blurSum, int amount) {
+        int blur = (blurSum + (1 << (BLUR_SHIFT - 1))) >> BLUR_SHIFT;
+        int v = value + (((value - blur) * amount + 128) >> 8);
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+}
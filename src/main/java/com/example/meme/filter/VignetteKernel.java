@@ -0,0 +1,100 @@
+package com.example.meme.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 暗角内核
+ * 按像素到中心的归一化距离压暗四周：衰减曲线为 smoothstep(0.35, 1, d)，只取决于图片尺寸，
+ * 预计算为 Q16 定点遮罩并按尺寸缓存（LRU，最多 {@link #MAX_CACHED_MASKS} 个）；
+ * 遮罩关于中心对称，只存左上四分之一，内存为整图的 1/4 × 1/2（char 存储）。
+ * 强度只影响压暗幅度，同一尺寸的不同强度共用同一遮罩。
+ * 输出只依赖同一位置的输入像素，可以原地执行；透明度保持不变。
+ */
+public final class VignetteKernel implements PixelKernel {
+
+    /**
+     * 标准强度下四角的最大压暗比例
+     */
+    public static final double DEFAULT_AMOUNT = 0.6;
+
+    /**
+     * 最多缓存的遮罩数量
+     */
+    static final int MAX_CACHED_MASKS = 8;
+
+    private static final double INNER_RADIUS = 0.35;
+
+    private static final Map<Long, char[]> MASK_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, char[]> eldest) {
+            return size() > MAX_CACHED_MASKS;
+        }
+    };
+
+    private final int amountQ8;
+
+    /**
+     * @param amount 四角压暗比例，0 为原图，1 为全黑
+     */
+    public VignetteKernel(double amount) {
+        this.amountQ8 = (int) Math.round(Math.max(0.0, Math.min(1.0, amount)) * 256);
+    }
+
+    @Override
+    public void apply(int[] src, int[] dst, int width, int height, int rowStart, int rowEnd) {
+        char[] mask = maskFor(width, height);
+        int quarterWidth = (width + 1) / 2;
+        int amount = amountQ8;
+        for (int y = rowStart; y < rowEnd; y++) {
+            int maskOffset = Math.min(y, height - 1 - y) * quarterWidth;
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int m = mask[maskOffset + Math.min(x, width - 1 - x)];
+                int factor = 65536 - ((m * amount) >> 8);
+                int p = src[offset + x];
+                int r = (((p >> 16) & 0xFF) * factor) >>> 16;
+                int g = (((p >> 8) & 0xFF) * factor) >>> 16;
+                int b = ((p & 0xFF) * factor) >>> 16;
+                dst[offset + x] = (p & 0xFF000000) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * 获取（必要时生成）指定尺寸的四分之一遮罩
+     */
+    static char[] maskFor(int width, int height) {
+        long key = ((long) width << 32) | height;
+        synchronized (MASK_CACHE) {
+            char[] mask = MASK_CACHE.get(key);
+            if (mask != null) {
+                return mask;
+            }
+        }
+        char[] mask = buildMask(width, height);
+        synchronized (MASK_CACHE) {
+            MASK_CACHE.put(key, mask);
+        }
+        return mask;
+    }
+
+    private static char[] buildMask(int width, int height) {
+        int quarterWidth = (width + 1) / 2;
+        int quarterHeight = (height + 1) / 2;
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+        double maxDistance = Math.sqrt(centerX * centerX + centerY * centerY);
+        char[] mask = new char[quarterWidth * quarterHeight];
+        for (int qy = 0; qy < quarterHeight; qy++) {
+            double dy = centerY - (qy + 0.5);
+            for (int qx = 0; qx < quarterWidth; qx++) {
+                double dx = centerX - (qx + 0.5);
+                double d = Math.sqrt(dx * dx + dy * dy) / maxDistance;
+                double t = Math.max(0.0, Math.min(1.0, (d - INNER_RADIUS) / (1.0 - INNER_RADIUS)));
+                mask[qy * quarterWidth + qx] = (char) Math.round(t * t * (3 - 2 * t) * 65535);
+            }
+        }
+        return mask;
+    }
+}
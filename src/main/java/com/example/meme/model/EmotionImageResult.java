@@ -0,0 +1,54 @@
+package com.example.meme.model;
+
+/**
+ * 批量生成中单个情绪的结果
+ * 成功时包含图片 URL，失败时包含原因，某个情绪失败不影响其他情绪
+ */
+public class EmotionImageResult {
+
+    /**
+     * 情绪类型
+     */
+    private final EmotionType emotionType;
+
+    /**
+     * 生成的图片 URL（失败时为空）
+     */
+    private final String imageUrl;
+
+    /**
+     * 失败原因（成功时为空）
+     */
+    private final String message;
+
+    private EmotionImageResult(EmotionType emotionType, String imageUrl, String message) {
+        this.emotionType = emotionType;
+        this.imageUrl = imageUrl;
+        this.message = message;
+    }
+
+    public static EmotionImageResult success(EmotionType emotionType, String imageUrl) {
+        return new EmotionImageResult(emotionType, imageUrl, null);
+    }
+
+    public static EmotionImageResult failure(EmotionType emotionType, String message) {
+        return new EmotionImageResult(emotionType, null, message);
+    }
+
+    public boolean isSuccess() {
+        return imageUrl != null;
+    }
+
+    // Getters
+    public EmotionType getEmotionType() {
+        return emotionType;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.meme.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 滤镜链
+ * 按顺序叠加多个滤镜，格式：warm,contrast 或 warm:0.5+contrast（冒号后为强度，可选）
+ */
+public class FilterChain {
+
+    /**
+     * 单个滤镜链最多包含的滤镜数量
+     */
+    public static final int MAX_STEPS = 8;
+
+    private static final FilterChain EMPTY = new FilterChain(Collections.emptyList());
+
+    private final List<Step> steps;
+
+    public FilterChain(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    /**
+     * 空滤镜链
+     */
+    public static FilterChain empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 单个滤镜构成的滤镜链
+     */
+    public static FilterChain of(FilterType filterType) {
+        if (filterType == null || filterType == FilterType.NONE) {
+            return EMPTY;
+        }
+        return new FilterChain(Collections.singletonList(new Step(filterType, 1.0)));
+    }
+
+    /**
+     * 解析滤镜链参数，未知滤镜和 none 会被忽略
+     *
+     * @param code 滤镜参数，如 warm,contrast
+     * @return 滤镜链
+     */
+    public static FilterChain parse(String code) {
+        if (code == null || code.trim().isEmpty()) {
+            return EMPTY;
+        }
+        List<Step> steps = new ArrayList<>();
+        for (String part : code.split("[,+]")) {
+            String token = part.trim();
+            if (token.isEmpty()) {
+                continue;
+            }
+            double intensity = 1.0;
+            int colon = token.indexOf(':');
+            if (colon >= 0) {
+                try {
+                    intensity = Double.parseDouble(token.substring(colon + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("滤镜强度格式错误: " + token);
+                }
+                token = token.substring(0, colon).trim();
+            }
+            FilterType type = FilterType.fromCode(token);
+            if (type != FilterType.NONE) {
+                steps.add(new Step(type, intensity));
+            }
+        }
+        if (steps.size() > MAX_STEPS) {
+            throw new IllegalArgumentException("滤镜数量不能超过 " + MAX_STEPS + " 个");
+        }
+        return steps.isEmpty() ? EMPTY : new FilterChain(steps);
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /**
+     * 滤镜链的中文名称，如 暖色+高对比
+     */
+    public String getName() {
+        return steps.stream().map(step -> step.getType().getName()).collect(Collectors.joining("+"));
+    }
+
+    /**
+     * 规范化后的滤镜链代码，如 warm,contrast:0.5
+     */
+    public String getCode() {
+        return steps.stream()
+                .map(step -> step.getIntensity() == 1.0
+                        ? step.getType().getCode()
+                        : step.getType().getCode() + ":" + step.getIntensity())
+                .collect(Collectors.joining(","));
+    }
+
+    @Override
+    public String toString() {
+        return getCode();
+    }
+
+    /**
+     * 滤镜链中的一步
+     */
+    public static class Step {
+
+        private final FilterType type;
+        private final double intensity;
+
+        public Step(FilterType type, double intensity) {
+            this.type = type;
+            this.intensity = intensity;
+        }
+
+        public FilterType getType() {
+            return type;
+        }
+
+        public double getIntensity() {
+            return intensity;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.meme.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 滤镜预览拼图
+ * 一张图片中按网格排列所有滤镜在缩略图上的效果
+ */
+public class FilterPreviewSheet {
+
+    /**
+     * 拼图访问 URL
+     */
+    private String imageUrl;
+
+    /**
+     * 单个预览格子的边长（像素）
+     */
+    private int tileSize;
+
+    /**
+     * 列数
+     */
+    private int columns;
+
+    /**
+     * 行数
+     */
+    private int rows;
+
+    /**
+     * 每个滤镜在拼图中的位置
+     */
+    private List<Tile> tiles = new ArrayList<>();
+
+    public FilterPreviewSheet() {
+    }
+
+    public FilterPreviewSheet(String imageUrl, int tileSize, int columns, List<FilterType> filters) {
+        this.imageUrl = imageUrl;
+        this.tileSize = tileSize;
+        this.columns = columns;
+        this.rows = (filters.size() + columns - 1) / columns;
+        for (int i = 0; i < filters.size(); i++) {
+            FilterType type = filters.get(i);
+            tiles.add(new Tile(type.getCode(), type.getName(), (i % columns) * tileSize, (i / columns) * tileSize));
+        }
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public List<Tile> getTiles() {
+        return tiles;
+    }
+
+    /**
+     * 拼图中的一个预览格子
+     */
+    public static class Tile {
+
+        private final String code;
+        private final String name;
+        private final int x;
+        private final int y;
+
+        public Tile(String code, String name, int x, int y) {
+            this.code = code;
+            this.name = name;
+            this.x = x;
+            this.y = y;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+    }
+}
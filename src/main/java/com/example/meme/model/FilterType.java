@@ -13,7 +13,10 @@ public enum FilterType {
     COOL("cool", "冷色", "冷色调滤镜"),
     SEPIA("sepia", "怀旧", "棕褐色怀旧效果"),
     CONTRAST("contrast", "高对比", "增强对比度"),
-    SATURATE("saturate", "高饱和", "增强饱和度");
+    SATURATE("saturate", "高饱和", "增强饱和度"),
+    BLUR("blur", "模糊", "柔化虚化效果"),
+    SHARPEN("sharpen", "锐化", "增强细节清晰度"),
+    VIGNETTE("vignette", "暗角", "压暗四周突出主体");
     
     private final String code;
     private final String name;
@@ -0,0 +1,52 @@
+package com.example.meme.model;
+
+/**
+ * 生成进度事件
+ * 作为 SSE 事件的数据推送给客户端，stage 为阶段代码，detail 为补充信息（如生成所用的模型、滤镜名称）
+ */
+public class GenerationEvent {
+
+    /**
+     * 阶段代码
+     */
+    private final String stage;
+
+    /**
+     * 阶段名称
+     */
+    private final String name;
+
+    /**
+     * 补充信息（可为空）
+     */
+    private final String detail;
+
+    /**
+     * 发生时间（毫秒时间戳）
+     */
+    private final long timestamp;
+
+    public GenerationEvent(GenerationStage stage, String detail) {
+        this.stage = stage.getCode();
+        this.name = stage.getName();
+        this.detail = detail;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    // Getters
+    public String getStage() {
+        return stage;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.meme.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 异步生成任务
+ * 由工作线程更新状态、由查询接口读取，字段均为 volatile，进度事件列表通过任务对象加锁访问；结束后保留到过期为止
+ */
+public class GenerationJob {
+
+    /**
+     * 任务 ID
+     */
+    private final String id;
+
+    /**
+     * 情绪类型
+     */
+    private final EmotionType emotionType;
+
+    /**
+     * 创建时间（毫秒时间戳）
+     */
+    private final long createdAt;
+
+    private volatile JobStatus status = JobStatus.PENDING;
+
+    /**
+     * 生成结果的图片 URL（成功后才有）
+     */
+    private volatile String imageUrl;
+
+    /**
+     * 失败原因
+     */
+    private volatile String message;
+
+    /**
+     * 开始执行时间（毫秒时间戳，未开始为 0）
+     */
+    private volatile long startedAt;
+
+    /**
+     * 结束时间（毫秒时间戳，未结束为 0）
+     */
+    private volatile long finishedAt;
+
+    /**
+     * 已完成阶段的进度事件（按发生顺序）
+     */
+    private final List<GenerationEvent> events = new ArrayList<>();
+
+    public GenerationJob(String id, EmotionType emotionType) {
+        this.id = id;
+        this.emotionType = emotionType;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public void markRunning() {
+        startedAt = System.currentTimeMillis();
+        status = JobStatus.RUNNING;
+    }
+
+    public void markSucceeded(String imageUrl) {
+        this.imageUrl = imageUrl;
+        finishedAt = System.currentTimeMillis();
+        status = JobStatus.SUCCEEDED;
+    }
+
+    public void markFailed(String message) {
+        this.message = message;
+        finishedAt = System.currentTimeMillis();
+        status = JobStatus.FAILED;
+    }
+
+    public synchronized void addEvent(GenerationEvent event) {
+        events.add(event);
+    }
+
+    /**
+     * 已发生的进度事件（副本）
+     */
+    public synchronized List<GenerationEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    /**
+     * 最近完成的阶段，尚未完成任何阶段时返回 null
+     */
+    public synchronized GenerationEvent getLastEvent() {
+        return events.isEmpty() ? null : events.get(events.size() - 1);
+    }
+
+    /**
+     * 是否已结束且超过保留时间
+     */
+    public boolean isExpired(long now, long ttlMillis) {
+        return status.isFinished() && now - finishedAt > ttlMillis;
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public EmotionType getEmotionType() {
+        return emotionType;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.meme.model;
+
+/**
+ * 表情包生成阶段枚举
+ * 按生成流程的先后顺序排列，没有滤镜或文字时跳过对应阶段
+ */
+public enum GenerationStage {
+    VALIDATED("validated", "图片已校验"),
+    UNDERSTOOD("understood", "图片理解完成"),
+    SYNTHESIZED("synthesized", "表情图片已生成"),
+    FILTERED("filtered", "滤镜已应用"),
+    COMPOSED("composed", "文字已合成"),
+    STORED("stored", "结果已保存");
+
+    private final String code;
+    private final String name;
+
+    GenerationStage(String code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -25,6 +25,12 @@ public class ImageGenerateResult {
     @JsonProperty("emotion")
     private String emotion;
     
+    /**
+     * 实际生成图片的模型（模拟结果为空）
+     */
+    @JsonProperty("model")
+    private String model;
+    
     public ImageGenerateResult() {
     }
     
@@ -57,5 +63,13 @@ public class ImageGenerateResult {
     public void setEmotion(String emotion) {
         this.emotion = emotion;
     }
+    
+    public String getModel() {
+        return model;
+    }
+    
+    public void setModel(String model) {
+        this.model = model;
+    }
 }
 
@@ -1,5 +1,6 @@
 package com.example.meme.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -20,6 +21,12 @@ public class ImageUnderstandResult {
     @JsonProperty("text")
     private String text;
     
+    /**
+     * 是否为 AI 调用或解析失败时的模拟结果（不是对图片的真实理解）
+     */
+    @JsonIgnore
+    private boolean fallback;
+    
     public ImageUnderstandResult() {
     }
     
@@ -44,11 +51,20 @@ public class ImageUnderstandResult {
         this.text = text;
     }
     
+    public boolean isFallback() {
+        return fallback;
+    }
+    
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+    
     @Override
     public String toString() {
         return "ImageUnderstandResult{" +
                 "description='" + description + '\'' +
                 ", text='" + text + '\'' +
+                ", fallback=" + fallback +
                 '}';
     }
 }
@@ -0,0 +1,34 @@
+package com.example.meme.model;
+
+/**
+ * 异步生成任务状态枚举
+ */
+public enum JobStatus {
+    PENDING("pending", "排队中"),
+    RUNNING("running", "生成中"),
+    SUCCEEDED("succeeded", "已完成"),
+    FAILED("failed", "失败");
+
+    private final String code;
+    private final String name;
+
+    JobStatus(String code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 是否已结束（成功或失败）
+     */
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.meme.model;
+
+/**
+ * 输出图片格式枚举
+ */
+public enum OutputFormat {
+    AUTO("auto", null, null),
+    PNG("png", "png", "image/png"),
+    PNG8("png8", "png", "image/png"),
+    JPEG("jpeg", "jpg", "image/jpeg");
+
+    private final String code;
+    private final String extension;
+    private final String mimeType;
+
+    OutputFormat(String code, String extension, String mimeType) {
+        this.code = code;
+        this.extension = extension;
+        this.mimeType = mimeType;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * 文件扩展名（AUTO 为空，需先确定实际格式）
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * 根据代码获取输出格式（jpg 与 jpeg 等价）
+     */
+    public static OutputFormat fromCode(String code) {
+        if (code == null || code.trim().isEmpty()) {
+            return AUTO;
+        }
+        String normalized = code.trim();
+        if ("jpg".equalsIgnoreCase(normalized)) {
+            return JPEG;
+        }
+        for (OutputFormat format : values()) {
+            if (format.code.equalsIgnoreCase(normalized)) {
+                return format;
+            }
+        }
+        return AUTO;
+    }
+}
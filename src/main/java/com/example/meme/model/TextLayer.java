@@ -0,0 +1,93 @@
+package com.example.meme.model;
+
+/**
+ * 文字图层
+ * 一张表情包可以叠加多个文字图层（如经典的上下两行文案），每个图层有独立的文字样式；
+ * 图层上的 position、rotation 优先于样式中的同名设置，便于只写位置就复用同一套样式
+ */
+public class TextLayer {
+
+    /**
+     * 文字内容
+     */
+    private String text;
+
+    /**
+     * 文字样式（为空时使用默认样式）
+     */
+    private TextStyle style;
+
+    /**
+     * 文字位置（top, center, bottom），为空时使用样式中的位置
+     */
+    private String position;
+
+    /**
+     * 文字旋转角度（度），为空时使用样式中的角度
+     */
+    private Integer rotation;
+
+    // 默认构造函数
+    public TextLayer() {
+    }
+
+    public TextLayer(String text, TextStyle style) {
+        this.text = text;
+        this.style = style;
+    }
+
+    // Getters and Setters
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public TextStyle getStyle() {
+        return style;
+    }
+
+    public void setStyle(TextStyle style) {
+        this.style = style;
+    }
+
+    public String getPosition() {
+        return position;
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public Integer getRotation() {
+        return rotation;
+    }
+
+    public void setRotation(Integer rotation) {
+        this.rotation = rotation;
+    }
+
+    /**
+     * 是否有需要绘制的文字
+     */
+    public boolean hasText() {
+        return text != null && !text.trim().isEmpty();
+    }
+
+    /**
+     * 获取实际生效的样式：在样式的副本上合并图层的位置和旋转角度，不修改图层自己的样式对象
+     * （同一批图层会被批量生成的多个线程同时使用，多个图层也可能共用一个样式对象）
+     */
+    public TextStyle resolveStyle() {
+        TextStyle resolved = style != null ? style.copy() : new TextStyle();
+        if (position != null) {
+            resolved.setPosition(position);
+        }
+        if (rotation != null) {
+            resolved.setRotation(rotation);
+        }
+        return resolved;
+    }
+}
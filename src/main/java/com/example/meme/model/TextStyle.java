@@ -71,6 +71,26 @@ public class TextStyle {
     public TextStyle() {
     }
     
+    /**
+     * 复制样式（各字段均为不可变值，浅复制即可）
+     */
+    public TextStyle copy() {
+        TextStyle copy = new TextStyle();
+        copy.textColor = textColor;
+        copy.strokeColor = strokeColor;
+        copy.strokeWidth = strokeWidth;
+        copy.fontSize = fontSize;
+        copy.fontName = fontName;
+        copy.position = position;
+        copy.opacity = opacity;
+        copy.rotation = rotation;
+        copy.enableShadow = enableShadow;
+        copy.shadowColor = shadowColor;
+        copy.shadowOffsetX = shadowOffsetX;
+        copy.shadowOffsetY = shadowOffsetY;
+        return copy;
+    }
+    
     // Getters and Setters
     public String getTextColor() {
         return textColor;
@@ -0,0 +1,420 @@
+package com.example.meme.service;
+
+import com.example.meme.model.EmotionType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * AI 生成结果缓存（两级：内存 LRU + 磁盘）
+ * 以原图内容、情绪和图片生成模型配置的 SHA-256 为键，缓存 AI 生成的图片字节；命中时跳过图片理解和图片生成两次 AI 调用。
+ * 内存层按字节数限制容量，超出时淘汰最久未使用的条目；磁盘层存放在 file.upload-dir 下的子目录中，超出配额时淘汰最早写入的文件。
+ * 两级条目都按写入时间计算过期，过期后视为未命中。
+ * 磁盘层的文件大小和写入时间在首次访问时扫描一次目录，之后随写入和删除维护，写入时不再遍历目录。
+ * 需要下载或解码才能得到字节的结果通过 {@link #putLater(String, BytesSource)} 在后台线程写入，不占用请求线程。
+ */
+@Slf4j
+@Component
+public class AiResultCache {
+
+    /**
+     * 是否启用缓存
+     */
+    @Value("${ai-cache.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * 缓存有效期（秒），从写入时开始计算
+     */
+    @Value("${ai-cache.ttl-seconds:86400}")
+    private long ttlSeconds = 86400;
+
+    /**
+     * 内存层最多占用的字节数
+     */
+    @Value("${ai-cache.memory-max-bytes:67108864}")
+    private long memoryMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 磁盘层最多占用的字节数
+     */
+    @Value("${ai-cache.disk-max-bytes:536870912}")
+    private long diskMaxBytes = 512L * 1024 * 1024;
+
+    /**
+     * 磁盘层目录，相对路径时位于 file.upload-dir 下
+     */
+    @Value("${ai-cache.dir:ai-cache}")
+    private String dir = "ai-cache";
+
+    /**
+     * 后台写入缓存的线程数
+     */
+    @Value("${ai-cache.fill-threads:2}")
+    private int fillThreads = 2;
+
+    /**
+     * 后台写入的等待队列容量，队列满时放弃写入
+     */
+    private static final int FILL_QUEUE_CAPACITY = 64;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    private final Map<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long memoryBytes;
+
+    /**
+     * 磁盘写入、删除和配额清理互斥，同时保护磁盘索引
+     */
+    private final Object diskLock = new Object();
+
+    /**
+     * 磁盘层索引：键 → 文件大小和写入时间，按写入顺序排列（最早写入的在前）；首次访问时从目录加载
+     */
+    private Map<String, DiskEntry> diskIndex;
+
+    private long diskBytes;
+
+    private ThreadPoolExecutor filler;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+    private final AtomicLong fillRejections = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, fillThreads);
+        AtomicInteger index = new AtomicInteger();
+        filler = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(FILL_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "ai-cache-filler-" + index.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        filler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 缓存键：原图内容、情绪和图片生成模型配置的 SHA-256
+     *
+     * @param imageBytes 原图字节
+     * @param emotionType 情绪类型
+     * @param modelSignature 图片生成模型配置，配置变化后旧结果不再命中
+     */
+    public static String key(byte[] imageBytes, EmotionType emotionType, String modelSignature) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(imageBytes);
+        digest.update(("\n" + emotionType.getEnglishName() + "\n" + modelSignature).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 查找缓存的图片字节，先查内存再查磁盘（磁盘命中后放入内存）
+     *
+     * @return 图片字节，未命中或已过期时返回 null
+     */
+    public byte[] get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (!isExpired(entry.createdAt, now)) {
+                    memoryHits.incrementAndGet();
+                    return entry.bytes;
+                }
+                memory.remove(key);
+                memoryBytes -= entry.bytes.length;
+            }
+        }
+
+        Path file = cacheDir().resolve(key + ".bin");
+        try {
+            long createdAt = Files.getLastModifiedTime(file).toMillis();
+            if (isExpired(createdAt, now)) {
+                synchronized (diskLock) {
+                    Files.deleteIfExists(file);
+                    forgetDisk(key);
+                }
+            } else {
+                byte[] bytes = Files.readAllBytes(file);
+                diskHits.incrementAndGet();
+                putMemory(key, new Entry(bytes, createdAt));
+                return bytes;
+            }
+        } catch (NoSuchFileException e) {
+            // 未命中
+        } catch (IOException e) {
+            log.warn("读取 AI 结果缓存失败: {}", e.getMessage());
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存（内存和磁盘），写入失败只记录日志
+     */
+    public void put(String key, byte[] bytes) {
+        if (!enabled || bytes == null || bytes.length == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        putMemory(key, new Entry(bytes, now));
+        puts.incrementAndGet();
+        if (bytes.length > diskMaxBytes) {
+            return;
+        }
+        synchronized (diskLock) {
+            try {
+                Path cacheDir = cacheDir();
+                loadDiskIndex(cacheDir);
+                Files.createDirectories(cacheDir);
+                Path tempPath = Files.createTempFile(cacheDir, key + "_", ".tmp");
+                try {
+                    Files.write(tempPath, bytes);
+                    Files.setLastModifiedTime(tempPath, FileTime.fromMillis(now));
+                    Files.move(tempPath, cacheDir.resolve(key + ".bin"), StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(tempPath);
+                }
+                // 重新写入的键移到最后
+                forgetDisk(key);
+                diskIndex.put(key, new DiskEntry(bytes.length, now));
+                diskBytes += bytes.length;
+                enforceDiskQuota(cacheDir, now);
+            } catch (IOException e) {
+                log.warn("写入 AI 结果缓存失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 在后台线程中取得图片字节并写入缓存，调用方不等待；取字节失败或等待队列已满时放弃写入
+     *
+     * @param key 缓存键
+     * @param source 图片字节来源（如下载 AI 返回的 OSS 图片）
+     */
+    public void putLater(String key, BytesSource source) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            filler.execute(() -> {
+                try {
+                    put(key, source.load());
+                } catch (IOException | RuntimeException e) {
+                    log.warn("AI 结果写入缓存失败: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fillRejections.incrementAndGet();
+            log.warn("AI 结果缓存写入队列已满，放弃写入");
+        }
+    }
+
+    /**
+     * 缓存统计：内存和磁盘命中、未命中、写入、淘汰次数，以及两级当前占用
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("puts", puts.get());
+        stats.put("memoryEvictions", memoryEvictions.get());
+        stats.put("diskEvictions", diskEvictions.get());
+        stats.put("fillRejections", fillRejections.get());
+        synchronized (memory) {
+            stats.put("memoryEntries", memory.size());
+            stats.put("memoryBytes", memoryBytes);
+        }
+        synchronized (diskLock) {
+            stats.put("diskEntries", diskIndex == null ? 0 : diskIndex.size());
+            stats.put("diskBytes", diskBytes);
+        }
+        stats.put("memoryMaxBytes", memoryMaxBytes);
+        stats.put("diskMaxBytes", diskMaxBytes);
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+
+    /**
+     * 磁盘层目录
+     */
+    public Path cacheDir() {
+        Path path = Paths.get(dir);
+        return path.isAbsolute() ? path : imageStorageService.resolveOutputDir().resolve(dir);
+    }
+
+    private void putMemory(String key, Entry entry) {
+        if (entry.bytes.length > memoryMaxBytes) {
+            return;
+        }
+        synchronized (memory) {
+            Entry previous = memory.put(key, entry);
+            if (previous != null) {
+                memoryBytes -= previous.bytes.length;
+            }
+            memoryBytes += entry.bytes.length;
+            // 淘汰最久未使用的条目，直到回到容量以内
+            Iterator<Entry> eldest = memory.values().iterator();
+            while (memoryBytes > memoryMaxBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().bytes.length;
+                eldest.remove();
+                memoryEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 按写入顺序从最早的文件开始删除：先删除已过期的，总大小仍超出配额时继续删除，直到回到配额以内
+     * 只使用索引中记录的大小和写入时间，不遍历目录；调用方持有 diskLock
+     */
+    private void enforceDiskQuota(Path cacheDir, long now) throws IOException {
+        Iterator<Map.Entry<String, DiskEntry>> eldest = diskIndex.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Map.Entry<String, DiskEntry> entry = eldest.next();
+            if (diskBytes <= diskMaxBytes && !isExpired(entry.getValue().createdAt, now)) {
+                break;
+            }
+            Files.deleteIfExists(cacheDir.resolve(entry.getKey() + ".bin"));
+            diskBytes -= entry.getValue().size;
+            eldest.remove();
+            diskEvictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 首次访问磁盘层时扫描目录建立索引（按写入时间排序）；调用方持有 diskLock
+     */
+    private void loadDiskIndex(Path cacheDir) throws IOException {
+        if (diskIndex != null) {
+            return;
+        }
+        List<Map.Entry<String, DiskEntry>> found = new ArrayList<>();
+        if (Files.isDirectory(cacheDir)) {
+            try (Stream<Path> stream = Files.list(cacheDir)) {
+                for (Path file : (Iterable<Path>) stream::iterator) {
+                    String name = file.getFileName().toString();
+                    if (!name.endsWith(".bin")) {
+                        continue;
+                    }
+                    try {
+                        DiskEntry entry = new DiskEntry(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                        found.add(Map.entry(name.substring(0, name.length() - ".bin".length()), entry));
+                    } catch (NoSuchFileException e) {
+                        // 已被删除
+                    }
+                }
+            }
+        }
+        found.sort(Comparator.comparingLong(entry -> entry.getValue().createdAt));
+        Map<String, DiskEntry> index = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<String, DiskEntry> entry : found) {
+            index.put(entry.getKey(), entry.getValue());
+            total += entry.getValue().size;
+        }
+        diskIndex = index;
+        diskBytes = total;
+    }
+
+    /**
+     * 从磁盘索引中移除（文件已删除或即将被覆盖）；调用方持有 diskLock
+     */
+    private void forgetDisk(String key) {
+        if (diskIndex == null) {
+            return;
+        }
+        DiskEntry previous = diskIndex.remove(key);
+        if (previous != null) {
+            diskBytes -= previous.size;
+        }
+    }
+
+    private boolean isExpired(long createdAt, long now) {
+        return now - createdAt > ttlSeconds * 1000;
+    }
+
+    /**
+     * 图片字节来源
+     */
+    @FunctionalInterface
+    public interface BytesSource {
+        byte[] load() throws IOException;
+    }
+
+    private static final class DiskEntry {
+
+        private final long size;
+
+        private final long createdAt;
+
+        private DiskEntry(long size, long createdAt) {
+            this.size = size;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] bytes;
+
+        private final long createdAt;
+
+        private Entry(byte[] bytes, long createdAt) {
+            this.bytes = bytes;
+            this.createdAt = createdAt;
+        }
+    }
+}
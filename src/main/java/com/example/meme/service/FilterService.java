@@ -1,289 +1,301 @@
 package com.example.meme.service;
 
+import com.example.meme.filter.FilterKernels;
+import com.example.meme.filter.KernelAccelerator;
+import com.example.meme.filter.PixelKernel;
+import com.example.meme.filter.RasterImages;
+import com.example.meme.filter.RowStripeTask;
+import com.example.meme.filter.SaturateKernel;
+import com.example.meme.model.FilterChain;
 import com.example.meme.model.FilterType;
+import com.example.meme.util.PixelBufferPool;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 /**
  * 滤镜服务
  * 提供各种图片滤镜效果
+ * 所有滤镜直接在 TYPE_INT_ARGB 栅格的 int[] 上运算，不再逐像素调用 getRGB/setRGB
+ * 开启并行模式后，大图按行条带拆分到专用 ForkJoinPool 上处理，结果与顺序执行逐像素一致
+ * 逐通道的点滤镜预编译为查找表，逐像素只做查表
+ * 滤镜链中相邻的点滤镜合成为一个查表内核，一次遍历完成，且后续逐点步骤在结果缓冲区上原地执行
+ * 模糊、锐化等邻域滤镜同样按行条带执行（条带只写自己的行，可读取相邻行），在滤镜链中写入独立缓冲区
+ * 开启向量化后（需使用 -Pvector 构建并以 --add-modules jdk.incubator.vector 启动），支持的内核改用 SIMD 实现，不可用时自动回退到标量实现
+ * 结果图片和非 ARGB 输入的临时像素数组从像素缓冲池借用，调用方用完结果后可归还到 {@link PixelBufferPool}
  */
+@Slf4j
 @Service
 public class FilterService {
-    
+
+    /**
+     * 是否启用并行滤镜
+     */
+    @Value("${filter.parallel.enabled:false}")
+    private boolean parallelEnabled = false;
+
+    /**
+     * 并行度（小于等于 0 时使用 CPU 核数）
+     */
+    @Value("${filter.parallel.parallelism:0}")
+    private int parallelism = 0;
+
+    /**
+     * 像素数低于该阈值时保持顺序执行
+     */
+    @Value("${filter.parallel.threshold-pixels:262144}")
+    private int parallelThresholdPixels = 262144;
+
+    /**
+     * 是否启用向量化（SIMD）内核
+     */
+    @Value("${filter.vector.enabled:false}")
+    private boolean vectorEnabled = false;
+
+    /**
+     * 像素缓冲池（手动构造时可能为空，此时直接分配新数组）
+     */
+    @Autowired(required = false)
+    private PixelBufferPool bufferPool;
+
+    private ForkJoinPool filterPool;
+
+    private KernelAccelerator accelerator;
+
+    @PostConstruct
+    public void init() {
+        if (vectorEnabled) {
+            accelerator = loadAccelerator(KernelAccelerator.VECTOR_IMPLEMENTATION);
+            if (accelerator != null) {
+                log.info("向量化滤镜已启用: {}", accelerator.getClass().getSimpleName());
+            }
+        }
+        if (!parallelEnabled) {
+            return;
+        }
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        filterPool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("filter-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        log.info("并行滤镜已启用: 并行度={}, 阈值={} 像素", threads, parallelThresholdPixels);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (filterPool != null) {
+            filterPool.shutdown();
+        }
+    }
+
     /**
      * 应用滤镜效果
-     * 
+     *
      * @param image 原始图片
      * @param filterType 滤镜类型
-     * @return 处理后的图片
+     * @return 处理后的图片（TYPE_INT_ARGB）
      */
     public BufferedImage applyFilter(BufferedImage image, FilterType filterType) {
+        return applyFilter(image, filterType, FilterKernels.DEFAULT_INTENSITY);
+    }
+
+    /**
+     * 按指定强度应用滤镜效果
+     * 点滤镜会被编译为查找表并按（滤镜, 强度）缓存，重复调用只做查表
+     *
+     * @param image 原始图片
+     * @param filterType 滤镜类型
+     * @param intensity 强度（0 表示原图，1 表示标准效果，最大 2）
+     * @return 处理后的图片（TYPE_INT_ARGB）
+     */
+    public BufferedImage applyFilter(BufferedImage image, FilterType filterType, double intensity) {
         if (filterType == null || filterType == FilterType.NONE) {
             return image;
         }
-        
-        switch (filterType) {
-            case GRAYSCALE:
-                return applyGrayscale(image);
-            case VINTAGE:
-                return applyVintage(image);
-            case BRIGHT:
-                return applyBright(image);
-            case DARK:
-                return applyDark(image);
-            case WARM:
-                return applyWarm(image);
-            case COOL:
-                return applyCool(image);
-            case SEPIA:
-                return applySepia(image);
-            case CONTRAST:
-                return applyContrast(image);
-            case SATURATE:
-                return applySaturate(image);
-            default:
-                return image;
+
+        PixelKernel kernel = FilterKernels.forType(filterType, intensity);
+        if (kernel == null) {
+            return image;
         }
+
+        return applyKernel(image, kernel);
     }
-    
+
     /**
-     * 黑白滤镜
+     * 调整饱和度
+     *
+     * @param image 原始图片
+     * @param strength 饱和度强度：0 为灰度，1 为原图，1.5 为标准“高饱和”，最大 4
+     * @return 处理后的图片（TYPE_INT_ARGB）
      */
-    private BufferedImage applyGrayscale(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                // 灰度公式：0.299*R + 0.587*G + 0.114*B
-                int gray = (int) (0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue());
-                Color grayColor = new Color(gray, gray, gray, color.getAlpha());
-                result.setRGB(x, y, grayColor.getRGB());
-            }
-        }
-        return result;
+    public BufferedImage applySaturate(BufferedImage image, double strength) {
+        return applyKernel(image, new SaturateKernel(strength));
     }
-    
+
     /**
-     * 复古滤镜
+     * 应用滤镜链
+     *
+     * @param image 原始图片
+     * @param chain 滤镜链
+     * @return 处理后的图片（TYPE_INT_ARGB），空滤镜链返回原图
      */
-    private BufferedImage applyVintage(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                // 复古效果：降低饱和度，增加暖色调
-                int r = Math.min(255, (int) (color.getRed() * 1.1));
-                int g = (int) (color.getGreen() * 0.95);
-                int b = (int) (color.getBlue() * 0.9);
-                
-                // 添加轻微黄色调
-                r = Math.min(255, r + 10);
-                g = Math.min(255, g + 5);
-                
-                Color vintageColor = new Color(r, g, b, color.getAlpha());
-                result.setRGB(x, y, vintageColor.getRGB());
-            }
+    public BufferedImage applyFilterChain(BufferedImage image, FilterChain chain) {
+        if (chain == null || chain.isEmpty()) {
+            return image;
         }
-        return result;
-    }
-    
-    /**
-     * 明亮滤镜
-     */
-    private BufferedImage applyBright(BufferedImage image) {
+
+        List<PixelKernel> kernels = FilterKernels.compileChain(chain);
+        if (kernels.isEmpty()) {
+            return image;
+        }
+
         int width = image.getWidth();
         int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                int r = Math.min(255, (int) (color.getRed() * 1.3));
-                int g = Math.min(255, (int) (color.getGreen() * 1.3));
-                int b = Math.min(255, (int) (color.getBlue() * 1.3));
-                
-                Color brightColor = new Color(r, g, b, color.getAlpha());
-                result.setRGB(x, y, brightColor.getRGB());
+
+        BufferedImage scratch = RasterImages.isCompactArgb(image) ? null : borrowBuffer(width, height);
+        int[] src = readPixels(image, scratch);
+        BufferedImage result = borrowBuffer(width, height);
+        int[] dst = RasterImages.pixels(result);
+
+        // 第一步从原图写入结果缓冲区，之后的点运算在结果缓冲区上原地执行
+        runKernel(kernels.get(0), src, dst, width, height);
+        for (int i = 1; i < kernels.size(); i++) {
+            PixelKernel kernel = kernels.get(i);
+            if (kernel.isPointwise()) {
+                runKernel(kernel, dst, dst, width, height);
+                continue;
             }
+            // 邻域内核（模糊、锐化）会读取相邻像素，不能原地执行，写入新缓冲区后替换结果
+            BufferedImage next = borrowBuffer(width, height);
+            runKernel(kernel, dst, RasterImages.pixels(next), width, height);
+            releaseBuffer(result);
+            result = next;
+            dst = RasterImages.pixels(result);
         }
+        releaseBuffer(scratch);
         return result;
     }
-    
+
     /**
-     * 暗调滤镜
+     * 渲染滤镜预览拼图
+     * 原图只缩放一次得到正方形缩略图，各滤镜直接在缩略图像素上运算并写入拼图对应格子
+     *
+     * @param image 原图
+     * @param filters 需要预览的滤镜（按顺序从左到右、从上到下排列）
+     * @param tileSize 格子边长
+     * @param columns 列数
+     * @return 拼图（TYPE_INT_ARGB）
      */
-    private BufferedImage applyDark(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                int r = (int) (color.getRed() * 0.7);
-                int g = (int) (color.getGreen() * 0.7);
-                int b = (int) (color.getBlue() * 0.7);
-                
-                Color darkColor = new Color(r, g, b, color.getAlpha());
-                result.setRGB(x, y, darkColor.getRGB());
+    public BufferedImage renderPreviewSheet(BufferedImage image, List<FilterType> filters, int tileSize, int columns) {
+        BufferedImage proxy = RasterImages.squareThumbnail(image, tileSize);
+        int[] proxyPixels = RasterImages.pixels(proxy);
+        int[] tile = new int[tileSize * tileSize];
+
+        int rows = (filters.size() + columns - 1) / columns;
+        int sheetWidth = tileSize * Math.min(columns, filters.size());
+        BufferedImage sheet = RasterImages.newArgbImage(Math.max(1, sheetWidth), Math.max(1, tileSize * rows));
+        int[] sheetPixels = RasterImages.pixels(sheet);
+
+        for (int i = 0; i < filters.size(); i++) {
+            PixelKernel kernel = FilterKernels.forType(filters.get(i));
+            int[] tilePixels = proxyPixels;
+            if (kernel != null) {
+                // 缩略图很小，直接顺序执行
+                kernel.apply(proxyPixels, tile, tileSize, tileSize, 0, tileSize);
+                tilePixels = tile;
+            }
+            int originX = (i % columns) * tileSize;
+            int originY = (i / columns) * tileSize;
+            for (int y = 0; y < tileSize; y++) {
+                System.arraycopy(tilePixels, y * tileSize, sheetPixels, (originY + y) * sheet.getWidth() + originX, tileSize);
             }
         }
-        return result;
+        return sheet;
     }
-    
+
     /**
-     * 暖色滤镜
+     * 对整张图片执行单个内核
      */
-    private BufferedImage applyWarm(BufferedImage image) {
+    private BufferedImage applyKernel(BufferedImage image, PixelKernel kernel) {
         int width = image.getWidth();
         int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                // 增强红色和黄色
-                int r = Math.min(255, (int) (color.getRed() * 1.2));
-                int g = Math.min(255, (int) (color.getGreen() * 1.1));
-                int b = (int) (color.getBlue() * 0.95);
-                
-                Color warmColor = new Color(r, g, b, color.getAlpha());
-                result.setRGB(x, y, warmColor.getRGB());
-            }
-        }
+
+        // 规整输入为 ARGB 像素数组，输出写入从缓冲池借用的 ARGB 栅格
+        BufferedImage scratch = RasterImages.isCompactArgb(image) ? null : borrowBuffer(width, height);
+        int[] src = readPixels(image, scratch);
+        BufferedImage result = borrowBuffer(width, height);
+        int[] dst = RasterImages.pixels(result);
+
+        runKernel(kernel, src, dst, width, height);
+        releaseBuffer(scratch);
         return result;
     }
-    
+
     /**
-     * 冷色滤镜
+     * 读取输入像素：紧凑 ARGB 图片直接返回底层数组，其余类型按 getRGB 语义转换到临时缓冲区
      */
-    private BufferedImage applyCool(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                // 增强蓝色和青色
-                int r = (int) (color.getRed() * 0.95);
-                int g = Math.min(255, (int) (color.getGreen() * 1.05));
-                int b = Math.min(255, (int) (color.getBlue() * 1.2));
-                
-                Color coolColor = new Color(r, g, b, color.getAlpha());
-                result.setRGB(x, y, coolColor.getRGB());
-            }
+    private int[] readPixels(BufferedImage image, BufferedImage scratch) {
+        if (scratch == null) {
+            return RasterImages.pixels(image);
         }
-        return result;
+        int width = image.getWidth();
+        return image.getRGB(0, 0, width, image.getHeight(), RasterImages.pixels(scratch), 0, width);
     }
-    
+
     /**
-     * 怀旧（棕褐色）滤镜
+     * 借用 ARGB 缓冲区，内容会被内核完整覆盖，无需清空
      */
-    private BufferedImage applySepia(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                // 转换为灰度
-                int gray = (int) (0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue());
-                
-                // 应用棕褐色调
-                int r = Math.min(255, (int) (gray * 1.2));
-                int g = Math.min(255, (int) (gray * 1.0));
-                int b = Math.min(255, (int) (gray * 0.8));
-                
-                Color sepiaColor = new Color(r, g, b, color.getAlpha());
-                result.setRGB(x, y, sepiaColor.getRGB());
-            }
+    private BufferedImage borrowBuffer(int width, int height) {
+        return bufferPool != null ? bufferPool.borrow(width, height, false) : RasterImages.newArgbImage(width, height);
+    }
+
+    private void releaseBuffer(BufferedImage buffer) {
+        if (bufferPool != null && buffer != null) {
+            bufferPool.release(buffer);
         }
-        return result;
     }
-    
+
     /**
-     * 高对比度滤镜
+     * 执行内核：小图或未启用并行时顺序执行，否则按行条带并行执行
      */
-    private BufferedImage applyContrast(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        double contrast = 1.5; // 对比度因子
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                // 应用对比度调整
-                int r = Math.max(0, Math.min(255, (int) ((color.getRed() - 128) * contrast + 128)));
-                int g = Math.max(0, Math.min(255, (int) ((color.getGreen() - 128) * contrast + 128)));
-                int b = Math.max(0, Math.min(255, (int) ((color.getBlue() - 128) * contrast + 128)));
-                
-                Color contrastColor = new Color(r, g, b, color.getAlpha());
-                result.setRGB(x, y, contrastColor.getRGB());
+    private void runKernel(PixelKernel kernel, int[] src, int[] dst, int width, int height) {
+        if (accelerator != null) {
+            PixelKernel accelerated = accelerator.accelerate(kernel);
+            if (accelerated != null) {
+                kernel = accelerated;
             }
         }
-        return result;
+        ForkJoinPool pool = filterPool;
+        if (pool == null || (long) width * height < parallelThresholdPixels || height < 2) {
+            kernel.apply(src, dst, width, height, 0, height);
+            return;
+        }
+        // 每个线程约分到 4 个条带，便于工作窃取平衡负载
+        int grainRows = Math.max(1, height / (pool.getParallelism() * 4));
+        pool.invoke(new RowStripeTask(kernel, src, dst, width, height, 0, height, grainRows));
     }
-    
+
     /**
-     * 高饱和度滤镜
+     * 加载内核加速器
+     * 未使用对应 profile 构建或运行时缺少所需模块时返回 null，调用方回退到标量实现
      */
-    private BufferedImage applySaturate(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
-        double saturation = 1.5; // 饱和度因子
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                Color color = new Color(rgb, true);
-                
-                // 转换为HSL，增加饱和度，再转回RGB
-                float[] hsb = Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), null);
-                float s = Math.min(1.0f, (float) (hsb[1] * saturation));
-                Color saturatedColor = new Color(Color.HSBtoRGB(hsb[0], s, hsb[2]));
-                
-                // 保持透明度
-                Color finalColor = new Color(
-                    saturatedColor.getRed(),
-                    saturatedColor.getGreen(),
-                    saturatedColor.getBlue(),
-                    color.getAlpha()
-                );
-                result.setRGB(x, y, finalColor.getRGB());
-            }
+    private KernelAccelerator loadAccelerator(String className) {
+        try {
+            return (KernelAccelerator) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            log.warn("未找到向量化滤镜实现（需要使用 -Pvector 构建），回退到标量实现");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("向量化滤镜不可用（需要 --add-modules jdk.incubator.vector），回退到标量实现: {}", e.toString());
         }
-        return result;
+        return null;
     }
 }
-
@@ -0,0 +1,225 @@
+package com.example.meme.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.font.TextLayout;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字体注册服务
+ * 启动时加载 classpath 下 fonts/ 目录中随应用打包的字体并注册到 GraphicsEnvironment，
+ * 只允许使用白名单中的字体：请求的字体不在白名单或当前环境未安装时，改用第一个可用的备选字体，
+ * 避免每次请求都对不存在的字体（如 Linux 镜像中的 SimHei）做缓慢的字体查找。
+ * 启动后在后台线程预热常用汉字的字形，缩短首个合成请求的耗时。
+ */
+@Slf4j
+@Service
+public class FontRegistry {
+
+    /**
+     * 打包字体所在的 classpath 位置
+     */
+    private static final String BUNDLED_FONTS = "classpath*:fonts/*";
+
+    /**
+     * 预热用的常用字：高频汉字、表情包常用字和标点
+     */
+    private static final String WARM_UP_TEXT = "的一是不了人我在有他这为之大来以个中上们到说国和地也子时道出而要于就下得可你年生自会那后能对着事"
+            + "哈啊呀吗呢吧太难笑哭气死开心生气惊讶害羞无语加班今天明天真的好累，。！？…ABCabc0123";
+
+    /**
+     * 允许使用的字体
+     */
+    @Value("${font.allowed:SimHei,SimSun,Microsoft YaHei,Noto Sans CJK SC,Noto Serif CJK SC,WenQuanYi Zen Hei,Source Han Sans SC,Arial}")
+    private List<String> allowedFonts = new ArrayList<>();
+
+    /**
+     * 备选字体（按顺序取第一个可用的），都不可用时使用 Java 逻辑字体 Dialog
+     */
+    @Value("${font.fallbacks:Noto Sans CJK SC,WenQuanYi Zen Hei,Source Han Sans SC,Microsoft YaHei,SimHei}")
+    private List<String> fallbackFonts = new ArrayList<>();
+
+    /**
+     * 是否在启动时后台预热字形
+     */
+    @Value("${font.warm-up:true}")
+    private boolean warmUpEnabled = true;
+
+    /**
+     * 当前环境可用的字体族（小写 → 规范名称），包括打包字体和系统字体
+     */
+    private final Map<String, String> availableFamilies = new ConcurrentHashMap<>();
+
+    /**
+     * 请求的字体名（小写）→ 实际使用的字体名
+     */
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    private final List<String> bundledFamilies = new ArrayList<>();
+
+    private volatile String defaultFont = Font.DIALOG;
+
+    @PostConstruct
+    public void init() {
+        long start = System.currentTimeMillis();
+        GraphicsEnvironment environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        registerBundledFonts(environment);
+
+        // 枚举系统字体在部分环境（如 Alpine）上较慢，只在启动时做一次
+        for (String family : environment.getAvailableFontFamilyNames(Locale.ENGLISH)) {
+            availableFamilies.put(family.toLowerCase(Locale.ROOT), family);
+        }
+        for (String family : fallbackFonts) {
+            String available = availableFamilies.get(family.trim().toLowerCase(Locale.ROOT));
+            if (available != null) {
+                defaultFont = available;
+                break;
+            }
+        }
+        log.info("字体注册完成: 打包字体={}, 默认字体={}, 耗时 {}ms",
+                bundledFamilies, defaultFont, System.currentTimeMillis() - start);
+
+        if (warmUpEnabled) {
+            Thread warmUp = new Thread(this::warmUp, "font-warmup");
+            warmUp.setDaemon(true);
+            warmUp.start();
+        }
+    }
+
+    /**
+     * 解析实际使用的字体
+     *
+     * @param fontName 请求的字体名（可为空）
+     * @return 白名单内且已安装的字体名，否则返回默认字体
+     */
+    public String resolve(String fontName) {
+        if (fontName == null || fontName.trim().isEmpty()) {
+            return defaultFont;
+        }
+        return resolved.computeIfAbsent(fontName.trim().toLowerCase(Locale.ROOT), this::lookup);
+    }
+
+    /**
+     * 默认字体（第一个可用的备选字体）
+     */
+    public String getDefaultFont() {
+        return defaultFont;
+    }
+
+    /**
+     * 白名单中当前环境可用的字体
+     */
+    public List<String> getAvailableFonts() {
+        Set<String> fonts = new TreeSet<>();
+        for (String font : allowedFonts) {
+            String available = availableFamilies.get(font.trim().toLowerCase(Locale.ROOT));
+            if (available != null) {
+                fonts.add(available);
+            }
+        }
+        fonts.add(defaultFont);
+        return new ArrayList<>(fonts);
+    }
+
+    /**
+     * 随应用打包的字体族
+     */
+    public List<String> getBundledFonts() {
+        return Collections.unmodifiableList(bundledFamilies);
+    }
+
+    private String lookup(String key) {
+        for (String font : allowedFonts) {
+            if (font.trim().toLowerCase(Locale.ROOT).equals(key)) {
+                String available = availableFamilies.get(key);
+                if (available != null) {
+                    return available;
+                }
+                log.info("字体 {} 未安装，改用 {}", font.trim(), defaultFont);
+                return defaultFont;
+            }
+        }
+        log.warn("字体 {} 不在允许列表中，改用 {}", key, defaultFont);
+        return defaultFont;
+    }
+
+    /**
+     * 加载并注册 classpath 下的字体文件（.ttf/.otf/.ttc）
+     */
+    private void registerBundledFonts(GraphicsEnvironment environment) {
+        Resource[] resources;
+        try {
+            resources = new PathMatchingResourcePatternResolver().getResources(BUNDLED_FONTS);
+        } catch (IOException e) {
+            log.warn("扫描打包字体失败: {}", e.getMessage());
+            return;
+        }
+        for (Resource resource : resources) {
+            String name = resource.getFilename();
+            if (name == null || !name.toLowerCase(Locale.ROOT).matches(".*\\.(ttf|otf|ttc)$")) {
+                continue;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                // createFonts 同时支持单个字体和字体集合（.ttc）
+                for (Font font : Font.createFonts(in)) {
+                    if (environment.registerFont(font)) {
+                        bundledFamilies.add(font.getFamily(Locale.ENGLISH));
+                    }
+                }
+            } catch (IOException | FontFormatException e) {
+                log.warn("加载字体 {} 失败: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 预热字形：在小画布上按常用字号绘制常用字，触发字体文件解析和字形缓存
+     */
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        Set<String> fonts = new LinkedHashSet<>();
+        fonts.add(defaultFont);
+        fonts.addAll(getAvailableFonts());
+        BufferedImage canvas = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = canvas.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            for (String family : fonts) {
+                for (int size : new int[]{40, 60}) {
+                    Font font = new Font(family, Font.BOLD, size);
+                    g2d.setFont(font);
+                    g2d.getFontMetrics().stringWidth(WARM_UP_TEXT);
+                    g2d.drawString(WARM_UP_TEXT, 0, size);
+                    new TextLayout(WARM_UP_TEXT, font, g2d.getFontRenderContext()).getOutline(null);
+                }
+            }
+            log.info("字形预热完成: 字体={}, 耗时 {}ms", fonts, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("字形预热失败: {}", e.getMessage());
+        } finally {
+            g2d.dispose();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.meme.service;
+
+import com.example.meme.model.OutputFormat;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * AI 生成的表情图片
+ * 持有 AI 返回的原始结果（OSS URL 或 data:image Base64 数据）或缓存中的图片字节，编码字节、解码后的图片和本地访问 URL 都按需生成：
+ * 需要继续加滤镜或文字时只取 {@link #getImage()}，中间结果不落盘；只有作为最终结果时才调用 {@link #persist(OutputFormat)} 保存。
+ * 编码字节可能由后台的缓存写入线程先取得（见 {@link ImageGenerateService}），取字节的方法加锁，远程图片最多下载一次。
+ */
+public final class GeneratedImage {
+
+    /**
+     * AI 返回的 OSS URL 或 data:image Base64 数据（来自缓存时为空）
+     */
+    private final String imageData;
+
+    private final String prefix;
+
+    private final ImageStorageService imageStorageService;
+
+    private byte[] encoded;
+
+    private BufferedImage image;
+
+    private String url;
+
+    GeneratedImage(String imageData, String prefix, ImageStorageService imageStorageService) {
+        this(imageData, null, prefix, imageStorageService);
+    }
+
+    private GeneratedImage(String imageData, byte[] encoded, String prefix, ImageStorageService imageStorageService) {
+        this.imageData = imageData;
+        this.encoded = encoded;
+        this.prefix = prefix;
+        this.imageStorageService = imageStorageService;
+    }
+
+    /**
+     * 由已编码的图片字节（如缓存命中的结果）构造
+     */
+    static GeneratedImage fromBytes(byte[] encoded, String prefix, ImageStorageService imageStorageService) {
+        return new GeneratedImage(null, encoded, prefix, imageStorageService);
+    }
+
+    /**
+     * AI 是否返回了可以直接访问的远程 URL（如 OSS URL）
+     */
+    public boolean isRemote() {
+        return imageData != null && isRemoteUrl(imageData);
+    }
+
+    /**
+     * 编码后的图片字节（首次调用时解码 Base64，远程 URL 需先下载）
+     */
+    public synchronized byte[] getEncodedBytes() throws IOException {
+        if (encoded == null) {
+            encoded = isRemote()
+                    ? imageStorageService.load(imageData)
+                    : Base64.getDecoder().decode(imageData.substring(imageData.indexOf(",") + 1));
+        }
+        return encoded;
+    }
+
+    /**
+     * 解码后的图片（首次调用时解码）
+     */
+    public BufferedImage getImage() throws IOException {
+        if (image == null) {
+            image = ImageIO.read(new ByteArrayInputStream(getEncodedBytes()));
+            if (image == null) {
+                throw new IOException("无法读取生成的图片数据");
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 作为最终结果保存并返回访问 URL（只保存一次）
+     * 远程 URL 直接返回，浏览器可以直接显示，不重新编码；
+     * 本地保存时，编码字节已是所需格式（或格式为 AUTO，与直接返回远程 URL 一致）则原样写入，否则解码后按格式重新编码
+     *
+     * @param format 本地保存的格式
+     * @return 图片访问 URL
+     */
+    public String persist(OutputFormat format) throws IOException {
+        if (isRemote()) {
+            return imageData;
+        }
+        if (url == null) {
+            byte[] bytes = getEncodedBytes();
+            OutputFormat encodedFormat = detectFormat(bytes);
+            if (encodedFormat != null && (format == null || format == OutputFormat.AUTO || format == encodedFormat)) {
+                url = imageStorageService.saveEncoded(bytes, prefix, encodedFormat);
+            } else {
+                url = imageStorageService.save(getImage(), prefix, format);
+            }
+        }
+        return url;
+    }
+
+    /**
+     * 按文件头识别编码格式：PNG 或 JPEG，其他格式返回 null
+     */
+    static OutputFormat detectFormat(byte[] bytes) {
+        if (bytes.length >= 8 && (bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G') {
+            return OutputFormat.PNG;
+        }
+        if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8 && (bytes[2] & 0xFF) == 0xFF) {
+            return OutputFormat.JPEG;
+        }
+        return null;
+    }
+
+    static boolean isRemoteUrl(String imageData) {
+        return imageData.startsWith("http://") || imageData.startsWith("https://");
+    }
+}
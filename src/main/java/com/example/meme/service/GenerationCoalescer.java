@@ -0,0 +1,161 @@
+package com.example.meme.service;
+
+import com.example.meme.model.GenerationStage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 相同生成请求合并（singleflight）
+ * 小程序连点、弱网重试会同时发出多个完全相同的生成请求，每个都要付费调用一次 AI。
+ * 按请求内容（图片哈希 + 规范化后的参数）合并：同一时刻只有第一个请求真正执行，其余相同的请求等待并共享它的结果（或异常）；
+ * 等待中的请求也能收到执行过程中的进度事件（先补发已发生的）。只合并进行中的请求，执行结束即移除，不缓存结果。
+ * 执行方无论以何种方式结束（包括 Error）都会通知等待方；等待方最多等待 coalesce.wait-timeout-seconds，超时按失败处理。
+ */
+@Slf4j
+@Component
+public class GenerationCoalescer {
+
+    /**
+     * 是否合并相同的进行中请求
+     */
+    @Value("${coalesce.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * 合并进来的请求等待结果的最长时间（秒），应不小于一次生成的最长耗时
+     */
+    @Value("${coalesce.wait-timeout-seconds:300}")
+    private long waitTimeoutSeconds = 300;
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * 执行生成，或合并到进行中的相同请求
+     *
+     * @param key 请求内容的键，相同的键视为相同请求
+     * @param listener 本请求的进度监听器
+     * @param generation 实际的生成过程
+     * @return 生成结果（合并的请求返回同一个结果）
+     */
+    public String execute(String key, GenerationListener listener, Generation generation) throws IOException {
+        if (!enabled) {
+            return generation.run(listener);
+        }
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            log.info("合并进行中的相同生成请求: {}", key.substring(0, Math.min(16, key.length())));
+            existing.attach(listener);
+            try {
+                return existing.await(waitTimeoutSeconds);
+            } finally {
+                existing.detach(listener);
+            }
+        }
+
+        executions.incrementAndGet();
+        flight.attach(listener);
+        try {
+            String result = generation.run(flight);
+            flight.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // 包括 OOM 等 Error，否则等待方会一直阻塞
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * 合并统计：实际执行次数、被合并的请求数和当前进行中的请求数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("executions", executions.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("inFlight", flights.size());
+        return stats;
+    }
+
+    /**
+     * 生成过程
+     */
+    @FunctionalInterface
+    public interface Generation {
+        String run(GenerationListener listener) throws IOException;
+    }
+
+    /**
+     * 进行中的请求：保存结果和已发生的进度事件，并把进度转发给所有合并进来的请求
+     */
+    private static final class Flight implements GenerationListener {
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private final List<GenerationStage> stages = new ArrayList<>();
+
+        private final List<String> details = new ArrayList<>();
+
+        private final List<GenerationListener> listeners = new ArrayList<>();
+
+        synchronized void attach(GenerationListener listener) {
+            for (int i = 0; i < stages.size(); i++) {
+                listener.onStage(stages.get(i), details.get(i));
+            }
+            listeners.add(listener);
+        }
+
+        synchronized void detach(GenerationListener listener) {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public synchronized void onStage(GenerationStage stage, String detail) {
+            stages.add(stage);
+            details.add(detail);
+            for (GenerationListener listener : listeners) {
+                listener.onStage(stage, detail);
+            }
+        }
+
+        String await(long timeoutSeconds) throws IOException {
+            try {
+                return result.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待相同请求的结果时被中断", e);
+            } catch (TimeoutException e) {
+                throw new IOException("等待相同请求的结果超时（" + timeoutSeconds + " 秒）", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException("相同请求执行失败: " + cause, cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.example.meme.service;
+
+import com.example.meme.model.EmotionType;
+import com.example.meme.model.FilterChain;
+import com.example.meme.model.GenerationEvent;
+import com.example.meme.model.GenerationJob;
+import com.example.meme.model.OutputFormat;
+import com.example.meme.model.TextLayer;
+import com.example.meme.util.ByteArrayMultipartFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步生成任务服务
+ * 生成表情包需要依次调用 AI 理解、AI 生成、下载和合成，耗时十几到几十秒；异步任务在专用的有界线程池中执行，
+ * 不占用 Tomcat 请求线程。任务状态保存在内存中，结束后保留 job.ttl-seconds 秒，由后台线程定期清理。
+ * 线程池和等待队列都满时拒绝新任务，由调用方稍后重试。
+ * 每个阶段完成时记录进度事件并推送给订阅了该任务的 SSE 连接，任务结束时推送结果并关闭连接；
+ * SseEmitter 是异步响应，等待中的客户端不占用 Servlet 线程。
+ * 事件在任务锁内放入每个连接自己的队列，由独立的发送线程按顺序发出，慢客户端不会阻塞生成线程或任务状态的读取；
+ * 发送失败的连接直接移除。
+ */
+@Slf4j
+@Service
+public class GenerationJobService {
+
+    /**
+     * 工作线程数（同时执行的生成任务数）
+     */
+    @Value("${job.worker-threads:4}")
+    private int workerThreads = 4;
+
+    /**
+     * 等待队列容量，队列满时拒绝新任务
+     */
+    @Value("${job.queue-capacity:64}")
+    private int queueCapacity = 64;
+
+    /**
+     * 任务结束后的保留时间（秒），过期后查询返回不存在
+     */
+    @Value("${job.ttl-seconds:600}")
+    private long ttlSeconds = 600;
+
+    /**
+     * 进度推送（SSE）连接的超时时间（秒）
+     */
+    @Value("${job.sse-timeout-seconds:300}")
+    private long sseTimeoutSeconds = 300;
+
+    /**
+     * 进度推送的发送线程数
+     */
+    @Value("${job.sse-sender-threads:2}")
+    private int sseSenderThreads = 2;
+
+    @Autowired
+    private MemeService memeService;
+
+    @Autowired
+    private ImageGalleryService imageGalleryService;
+
+    private final Map<String, GenerationJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 任务 ID → 订阅进度的 SSE 连接，任务结束后移除
+     */
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    private ThreadPoolExecutor executor;
+
+    private ScheduledExecutorService cleaner;
+
+    private ExecutorService sseSender;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, workerThreads);
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "generation-worker-" + index.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "generation-job-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger senderIndex = new AtomicInteger();
+        sseSender = Executors.newFixedThreadPool(Math.max(1, sseSenderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "sse-sender-" + senderIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Math.min(60, ttlSeconds));
+        cleaner.scheduleWithFixedDelay(this::evictExpired, period, period, TimeUnit.SECONDS);
+        log.info("异步生成任务已启用: 工作线程={}, 队列容量={}, 保留时间={}s", threads, queueCapacity, ttlSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+        sseSender.shutdownNow();
+    }
+
+    /**
+     * 提交上传图片的生成任务
+     * 图片在提交时校验并复制到内存（请求结束后上传的临时文件会被删除）
+     *
+     * @throws IllegalArgumentException 图片不合法
+     * @throws RejectedExecutionException 线程池和等待队列已满
+     */
+    public GenerationJob submit(MultipartFile image, EmotionType emotionType, List<TextLayer> layers,
+                                FilterChain filterChain, OutputFormat format) throws IOException {
+        memeService.validateImageFile(image);
+        MultipartFile copy = new ByteArrayMultipartFile(image.getBytes(), image.getName(),
+                image.getOriginalFilename(), image.getContentType());
+        return submit(emotionType,
+                listener -> memeService.generateEmotionImage(copy, emotionType, layers, filterChain, format, listener));
+    }
+
+    /**
+     * 提交图库图片的生成任务，图片在工作线程中下载
+     * URL 在提交时校验，只接受图库白名单域名下的地址，下载有超时和大小限制，不会长期占用工作线程
+     *
+     * @throws IllegalArgumentException 没有提供 URL 或 URL 不是图库图片
+     * @throws RejectedExecutionException 线程池和等待队列已满
+     */
+    public GenerationJob submit(String imageUrl, EmotionType emotionType, List<TextLayer> layers,
+                                FilterChain filterChain, OutputFormat format) {
+        if (imageUrl == null || imageUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("请上传图片或提供图库图片 URL");
+        }
+        String url = imageUrl.trim();
+        if (!imageGalleryService.isDownloadable(url)) {
+            throw new IllegalArgumentException("只支持图库中的图片 URL");
+        }
+        return submit(emotionType, listener -> {
+            byte[] imageBytes = imageGalleryService.downloadImage(url);
+            MultipartFile file = new ByteArrayMultipartFile(imageBytes, "image", "gallery-image.jpg", "image/jpeg");
+            return memeService.generateEmotionImage(file, emotionType, layers, filterChain, format, listener);
+        });
+    }
+
+    /**
+     * 查询任务
+     *
+     * @return 任务，不存在或已过期时返回 null
+     */
+    public GenerationJob getJob(String id) {
+        GenerationJob job = jobs.get(id);
+        if (job != null && job.isExpired(System.currentTimeMillis(), ttlSeconds * 1000)) {
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * 订阅任务进度
+     * 先补发已发生的进度事件；任务已结束时直接发送结果并关闭，否则之后的事件实时推送。
+     * 事件名为阶段代码（validated, understood, synthesized, filtered, composed, stored），数据为 {@link GenerationEvent}；
+     * 最后一个事件名为 done，数据为任务结果（status, imageUrl, message）
+     *
+     * @return SSE 连接，任务不存在或已过期时返回 null
+     */
+    public SseEmitter subscribe(String id) {
+        GenerationJob job = getJob(id);
+        if (job == null) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(id, new SseEmitter(sseTimeoutSeconds * 1000));
+        // 与进度记录、任务结束互斥，保证补发的事件和实时事件不重不漏；这里只入队，发送在锁外进行
+        synchronized (job) {
+            for (GenerationEvent event : job.getEvents()) {
+                subscriber.enqueue(progressEvent(event));
+            }
+            if (job.getStatus().isFinished()) {
+                subscriber.enqueueLast(doneEvent(toResult(job)));
+            } else {
+                subscribers.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>()).add(subscriber);
+            }
+        }
+        subscriber.schedule();
+        return subscriber.emitter;
+    }
+
+    /**
+     * 任务结果：状态、图片 URL 和失败原因
+     */
+    public Map<String, Object> toResult(GenerationJob job) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("jobId", job.getId());
+        result.put("status", job.getStatus().getCode());
+        result.put("imageUrl", job.getImageUrl());
+        result.put("message", job.getMessage());
+        return result;
+    }
+
+    /**
+     * 任务统计：提交、拒绝、成功、失败、过期清理次数，以及当前排队、执行中和保留的任务数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("submitted", submitted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("expired", expired.get());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("running", executor.getActiveCount());
+        stats.put("stored", jobs.size());
+        stats.put("subscribers", subscribers.values().stream().mapToInt(List::size).sum());
+        stats.put("workerThreads", executor.getMaximumPoolSize());
+        stats.put("queueCapacity", queueCapacity);
+        return stats;
+    }
+
+    private GenerationJob submit(EmotionType emotionType, JobTask task) {
+        GenerationJob job = new GenerationJob(UUID.randomUUID().toString().replace("-", ""), emotionType);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            rejected.incrementAndGet();
+            throw e;
+        }
+        submitted.incrementAndGet();
+        log.info("已提交生成任务: id={}, 情绪={}, 排队={}", job.getId(), emotionType.getChineseName(),
+                executor.getQueue().size());
+        return job;
+    }
+
+    private void run(GenerationJob job, JobTask task) {
+        job.markRunning();
+        try {
+            String imageUrl = task.run((stage, detail) -> publish(job, new GenerationEvent(stage, detail)));
+            finish(job, () -> job.markSucceeded(imageUrl));
+            succeeded.incrementAndGet();
+            log.info("生成任务完成: id={}, 耗时={}ms", job.getId(), job.getFinishedAt() - job.getStartedAt());
+        } catch (IllegalArgumentException e) {
+            finish(job, () -> job.markFailed(e.getMessage()));
+            failed.incrementAndGet();
+        } catch (Exception e) {
+            log.error("生成任务失败: id={}, {}", job.getId(), e.getMessage(), e);
+            finish(job, () -> job.markFailed("生成表情图片失败: " + e.getMessage()));
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * 记录进度事件并放入订阅者的发送队列
+     */
+    private void publish(GenerationJob job, GenerationEvent event) {
+        List<Subscriber> targets;
+        synchronized (job) {
+            job.addEvent(event);
+            List<Subscriber> current = subscribers.get(job.getId());
+            if (current == null) {
+                return;
+            }
+            targets = new ArrayList<>(current);
+            for (Subscriber subscriber : targets) {
+                subscriber.enqueue(progressEvent(event));
+            }
+        }
+        targets.forEach(Subscriber::schedule);
+    }
+
+    /**
+     * 更新任务结果，向订阅者发送 done 事件后关闭连接
+     */
+    private void finish(GenerationJob job, Runnable update) {
+        List<Subscriber> targets;
+        synchronized (job) {
+            update.run();
+            targets = subscribers.remove(job.getId());
+            if (targets == null) {
+                return;
+            }
+            Map<String, Object> result = toResult(job);
+            for (Subscriber subscriber : targets) {
+                subscriber.enqueueLast(doneEvent(result));
+            }
+        }
+        targets.forEach(Subscriber::schedule);
+    }
+
+    private static SseEmitter.SseEventBuilder progressEvent(GenerationEvent event) {
+        return SseEmitter.event().name(event.getStage()).data(event);
+    }
+
+    private static SseEmitter.SseEventBuilder doneEvent(Map<String, Object> result) {
+        return SseEmitter.event().name("done").data(result);
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        long ttlMillis = ttlSeconds * 1000;
+        jobs.values().removeIf(job -> {
+            boolean remove = job.isExpired(now, ttlMillis);
+            if (remove) {
+                expired.incrementAndGet();
+            }
+            return remove;
+        });
+    }
+
+    /**
+     * 订阅进度的 SSE 连接
+     * 事件先进入连接自己的队列，再由发送线程按顺序发出；同一连接同时最多只有一个发送任务，
+     * 发送失败（客户端断开）、超时或完成后不再发送，并从订阅列表中移除
+     */
+    private final class Subscriber {
+
+        private final String jobId;
+
+        private final SseEmitter emitter;
+
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 是否已有发送任务在排队或执行
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * 最后一个事件已入队，发完后关闭连接
+         */
+        private volatile boolean last;
+
+        private volatile boolean closed;
+
+        Subscriber(String jobId, SseEmitter emitter) {
+            this.jobId = jobId;
+            this.emitter = emitter;
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(e -> close());
+        }
+
+        void enqueue(SseEmitter.SseEventBuilder event) {
+            if (!closed) {
+                pending.add(event);
+            }
+        }
+
+        void enqueueLast(SseEmitter.SseEventBuilder event) {
+            enqueue(event);
+            last = true;
+        }
+
+        void schedule() {
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sseSender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 服务关闭中
+                scheduled.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    // 先读标记再取事件：标记为真时最后一个事件已在队列中，队列取空即全部发完
+                    boolean finished = last;
+                    SseEmitter.SseEventBuilder event = pending.poll();
+                    if (event != null) {
+                        emitter.send(event);
+                    } else {
+                        if (finished) {
+                            close();
+                            emitter.complete();
+                        }
+                        break;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+                emitter.completeWithError(e);
+            } finally {
+                scheduled.set(false);
+            }
+            // 发送期间新入队的事件
+            if (!closed && (!pending.isEmpty() || last)) {
+                schedule();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            pending.clear();
+            List<Subscriber> current = subscribers.get(jobId);
+            if (current != null) {
+                current.remove(this);
+            }
+        }
+    }
+
+    /**
+     * 生成任务，执行时汇报进度
+     */
+    @FunctionalInterface
+    private interface JobTask {
+        String run(GenerationListener listener) throws Exception;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.meme.service;
+
+import com.example.meme.model.GenerationStage;
+
+/**
+ * 生成进度监听器
+ * 在生成线程中、每个阶段完成时同步回调，实现应尽快返回且不抛出异常
+ */
+@FunctionalInterface
+public interface GenerationListener {
+
+    /**
+     * 不关心进度时使用
+     */
+    GenerationListener NONE = (stage, detail) -> {
+    };
+
+    /**
+     * 阶段完成
+     *
+     * @param stage 完成的阶段
+     * @param detail 补充信息（可为空），如生成所用的模型、滤镜名称
+     */
+    void onStage(GenerationStage stage, String detail);
+}
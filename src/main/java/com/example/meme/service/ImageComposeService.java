@@ -1,32 +1,93 @@
 package com.example.meme.service;
 
+import com.example.meme.model.OutputFormat;
+import com.example.meme.model.TextLayer;
 import com.example.meme.model.TextStyle;
+import com.example.meme.util.PixelBufferPool;
+import com.example.meme.util.TextWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 图片合成服务
  * 负责将文案绘制到图片上
+ * 文字排版（字体、换行、位置、字形轮廓、颜色）按文字和样式缓存，常用文案重复生成时跳过排版；
+ * 重复出现的文案还会预渲染为预乘 ARGB 精灵（按字节数限制的 LRU），之后一次 alpha 合成即可完成绘制
  */
 @Service
 public class ImageComposeService {
     
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    @Autowired
+    private ImageStorageService imageStorageService;
     
-    @Value("${file.base-url}")
-    private String baseUrl;
+    @Autowired
+    private PixelBufferPool bufferPool;
+    
+    @Autowired
+    private FontRegistry fontRegistry;
+    
+    /**
+     * 排版缓存最多保留的文字块数量
+     */
+    @Value("${compose.layout-cache.max-entries:512}")
+    private int layoutCacheMaxEntries = 512;
+    
+    /**
+     * 超过该长度的文字不缓存排版结果（长文案很少重复，且轮廓占用内存较多）
+     */
+    private static final int MAX_CACHED_TEXT_LENGTH = 200;
+    
+    /**
+     * 排版缓存（LRU）：键为文字、规范化后的样式和画布尺寸
+     */
+    private final Map<List<Object>, TextBlock> layoutCache = new LinkedHashMap<List<Object>, TextBlock>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, TextBlock> eldest) {
+            return size() > layoutCacheMaxEntries;
+        }
+    };
+    
+    private final AtomicLong layoutHits = new AtomicLong();
+    private final AtomicLong layoutMisses = new AtomicLong();
+    
+    /**
+     * 文字精灵缓存最多占用的字节数
+     */
+    @Value("${compose.sprite-cache.max-bytes:67108864}")
+    private long spriteCacheMaxBytes = 64L * 1024 * 1024;
+    
+    /**
+     * 文字块使用到第几次时预渲染为精灵
+     */
+    private static final int SPRITE_MIN_USES = 2;
+    
+    /**
+     * 文字精灵缓存（LRU，按字节数限制），键与排版缓存相同
+     */
+    private final Map<List<Object>, CaptionSprite> spriteCache = new LinkedHashMap<>(64, 0.75f, true);
+    
+    private long spriteBytes;
+    
+    private final AtomicLong spriteHits = new AtomicLong();
+    private final AtomicLong spriteMisses = new AtomicLong();
+    private final AtomicLong spriteEvictions = new AtomicLong();
     
     /**
      * 在图片上绘制文案并保存（使用默认样式）
@@ -50,61 +111,105 @@ public class ImageComposeService {
      * @return 生成的表情包图片 URL
      */
     public String composeImage(byte[] imageBytes, String text, TextStyle textStyle) throws IOException {
+        return composeLayers(imageBytes, List.of(new TextLayer(text, textStyle)), OutputFormat.AUTO);
+    }
+    
+    /**
+     * 在图片上按顺序绘制多个文字图层并保存
+     * 
+     * @param imageBytes 原始图片字节数组
+     * @param layers 文字图层（按顺序绘制，后面的图层覆盖前面的）
+     * @param format 输出格式，AUTO 时不透明图片保存为 JPEG，含透明像素时保存为 PNG
+     * @return 生成的表情包图片 URL（扩展名与实际格式一致）
+     */
+    public String composeLayers(byte[] imageBytes, List<TextLayer> layers, OutputFormat format) throws IOException {
         // 读取原始图片
         BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(imageBytes));
         if (originalImage == null) {
             throw new IOException("无法读取图片，请确保图片格式正确");
         }
-        
-        // 保持原图尺寸，不增加高度
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-        
-        // 创建支持透明度的图片（ARGB 格式）
-        BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        return composeLayers(originalImage, layers, format);
+    }
+    
+    /**
+     * 在已解码的图片上按顺序绘制多个文字图层并保存
+     * 所有图层绘制到同一块画布上，整个过程只编码一次，上一步（如滤镜）的结果无需再经过 PNG 编解码
+     * 
+     * @param originalImage 原始图片（不会被修改）
+     * @param layers 文字图层（按顺序绘制，后面的图层覆盖前面的）
+     * @param format 输出格式，AUTO 时不透明图片保存为 JPEG，含透明像素时保存为 PNG
+     * @return 生成的表情包图片 URL（扩展名与实际格式一致）
+     */
+    public String composeLayers(BufferedImage originalImage, List<TextLayer> layers, OutputFormat format) throws IOException {
+        BufferedImage newImage = renderLayers(originalImage, layers);
+        try {
+            return imageStorageService.save(newImage, "meme", format);
+        } finally {
+            bufferPool.release(newImage);
+        }
+    }
+    
+    /**
+     * 把原图和各文字图层绘制到新画布上（不保存）
+     * 
+     * @param originalImage 原始图片（不会被修改）
+     * @param layers 文字图层（按顺序绘制）
+     * @return 从像素缓冲池借用的 TYPE_INT_ARGB 画布，调用方用完后需归还缓冲池
+     */
+    public BufferedImage renderLayers(BufferedImage originalImage, List<TextLayer> layers) {
+        // 保持原图尺寸，不增加高度；从缓冲池借用支持透明度的画布（ARGB 格式），复用的画布需要清空
+        BufferedImage newImage = bufferPool.borrow(originalImage.getWidth(), originalImage.getHeight(), true);
         Graphics2D g2d = newImage.createGraphics();
-        
-        // 设置抗锯齿和高质量渲染
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        applyQualityHints(g2d);
         
         // 绘制原始图片（作为背景）
         g2d.drawImage(originalImage, 0, 0, null);
-        
-        // 绘制文字（背景透明，直接叠加在原图上）
-        drawText(g2d, text, width, height, textStyle);
+        drawLayers(g2d, newImage.getWidth(), newImage.getHeight(), layers);
         
         g2d.dispose();
-        
-        // 保存图片（使用 PNG 格式以支持透明度）
-        String fileName = "meme_" + System.currentTimeMillis() + ".png";
-        
-        // 如果 uploadDir 是相对路径，转换为绝对路径（项目根目录）
-        Path outputDir;
-        if (Paths.get(uploadDir).isAbsolute()) {
-            outputDir = Paths.get(uploadDir);
-        } else {
-            // 相对路径，使用项目根目录
-            String projectRoot = System.getProperty("user.dir");
-            outputDir = Paths.get(projectRoot, uploadDir);
+        return newImage;
+    }
+    
+    /**
+     * 直接在图片上绘制各文字图层（原地修改，省去复制到新画布）
+     * 
+     * @param canvas 调用方持有、可以修改的图片（如滤镜结果）
+     * @param layers 文字图层（按顺序绘制）
+     * @return 传入的图片
+     */
+    public BufferedImage drawLayers(BufferedImage canvas, List<TextLayer> layers) {
+        Graphics2D g2d = canvas.createGraphics();
+        applyQualityHints(g2d);
+        drawLayers(g2d, canvas.getWidth(), canvas.getHeight(), layers);
+        g2d.dispose();
+        return canvas;
+    }
+    
+    /**
+     * 逐层绘制文字（背景透明，直接叠加在原图上）；每层会设置自己的透明度和颜色，互不影响
+     */
+    private void drawLayers(Graphics2D g2d, int width, int height, List<TextLayer> layers) {
+        for (TextLayer layer : layers) {
+            if (layer != null && layer.hasText()) {
+                drawText(g2d, layer.getText(), width, height, layer.resolveStyle());
+            }
         }
-        
-        Path outputPath = outputDir.resolve(fileName);
-        
-        // 确保目录存在
-        Files.createDirectories(outputPath.getParent());
-        
-        // 保存文件（PNG 格式支持透明度）
-        ImageIO.write(newImage, "png", outputPath.toFile());
-        
-        // 返回访问 URL
-        return "/output/" + fileName;
+    }
+    
+    /**
+     * 设置抗锯齿和高质量渲染（画布和文字精灵使用相同设置，保证两种绘制方式效果一致）
+     */
+    private static void applyQualityHints(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
     }
     
     /**
      * 在图片上绘制文字（支持自定义样式）
+     * 排版结果按（文字, 规范化样式, 画布尺寸）缓存，重复的文案只需绘制；
+     * 再次出现的文案预渲染为精灵（含描边、阴影和透明度），之后只需一次 alpha 合成
      * 
      * @param g2d Graphics2D 对象
      * @param text 要绘制的文字
@@ -116,27 +221,140 @@ public class ImageComposeService {
         if (textStyle == null) {
             textStyle = new TextStyle();
         }
+        TextBlock block = layoutText(g2d, text, width, height, textStyle);
+        CaptionSprite sprite = block.key != null ? spriteFor(block, width, height) : null;
+        if (sprite == null) {
+            paintText(g2d, block);
+            return;
+        }
+        // SRC_OVER 满足结合律，先在透明精灵上按原顺序绘制再整体合成，与直接绘制到画布上的结果一致
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.drawImage(sprite.image, sprite.x, sprite.y, null);
+    }
+    
+    /**
+     * 获取文字精灵：命中缓存直接返回；文字块第二次使用时才预渲染，只出现一次的文案直接绘制
+     * 
+     * @return 精灵，不值得或无法预渲染时返回 null
+     */
+    private CaptionSprite spriteFor(TextBlock block, int width, int height) {
+        synchronized (spriteCache) {
+            CaptionSprite cached = spriteCache.get(block.key);
+            if (cached != null) {
+                spriteHits.incrementAndGet();
+                return cached;
+            }
+        }
+        if (block.uses.incrementAndGet() < SPRITE_MIN_USES) {
+            return null;
+        }
+        CaptionSprite sprite = renderSprite(block, width, height);
+        if (sprite == null || sprite.bytes() > spriteCacheMaxBytes) {
+            // 超过整个缓存容量的精灵不缓存，直接绘制即可
+            return null;
+        }
+        spriteMisses.incrementAndGet();
+        synchronized (spriteCache) {
+            CaptionSprite previous = spriteCache.put(block.key, sprite);
+            if (previous != null) {
+                spriteBytes -= previous.bytes();
+            }
+            spriteBytes += sprite.bytes();
+            // 按字节数淘汰最久未使用的精灵
+            Iterator<CaptionSprite> eldest = spriteCache.values().iterator();
+            while (spriteBytes > spriteCacheMaxBytes && eldest.hasNext()) {
+                spriteBytes -= eldest.next().bytes();
+                eldest.remove();
+                spriteEvictions.incrementAndGet();
+            }
+        }
+        return sprite;
+    }
+    
+    /**
+     * 把文字块渲染到刚好覆盖其范围（描边、阴影、旋转后）的预乘 ARGB 图片上
+     */
+    private CaptionSprite renderSprite(TextBlock block, int width, int height) {
+        Rectangle bounds = null;
+        for (TextLine line : block.lines) {
+            AffineTransform transform = line.rotation != null ? line.rotation : new AffineTransform();
+            Rectangle lineBounds = transform.createTransformedShape(line.strokeShape).getBounds();
+            if (block.shadowColor != null) {
+                AffineTransform shadow = new AffineTransform(transform);
+                shadow.translate(block.shadowOffsetX, block.shadowOffsetY);
+                lineBounds.add(shadow.createTransformedShape(line.outline).getBounds());
+            }
+            bounds = bounds == null ? lineBounds : bounds.union(lineBounds);
+        }
+        if (bounds == null) {
+            return null;
+        }
+        // 留出抗锯齿边缘，并裁剪到画布范围内
+        bounds.grow(2, 2);
+        bounds = bounds.intersection(new Rectangle(0, 0, width, height));
+        if (bounds.isEmpty()) {
+            return null;
+        }
         
-        // 设置字体
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = image.createGraphics();
+        applyQualityHints(g2d);
+        g2d.translate(-bounds.x, -bounds.y);
+        paintText(g2d, block);
+        g2d.dispose();
+        return new CaptionSprite(image, bounds.x, bounds.y);
+    }
+    
+    /**
+     * 获取排版结果：命中缓存直接返回，否则排版并放入缓存
+     */
+    private TextBlock layoutText(Graphics2D g2d, String text, int width, int height, TextStyle textStyle) {
+        // 规范化样式：与绘制时一致地补全默认值，保证等价的样式得到同一个缓存键
+        // 字体名按白名单解析为实际安装的字体，未安装的字体（如 Linux 上的 SimHei）统一落到默认字体
+        String fontName = fontRegistry.resolve(textStyle.getFontName());
         int fontSize = textStyle.getFontSize() != null ? textStyle.getFontSize() : Math.max(30, Math.min(60, width / 20));
-        Font font = new Font(textStyle.getFontName(), Font.BOLD, fontSize);
-        g2d.setFont(font);
+        String position = textStyle.getPosition() != null ? textStyle.getPosition().toLowerCase() : "center";
+        float opacity = textStyle.getOpacity() != null ? textStyle.getOpacity().floatValue() : 1.0f;
+        int rotation = textStyle.getRotation() != null ? textStyle.getRotation() : 0;
+        int strokeWidth = textStyle.getStrokeWidth() != null ? textStyle.getStrokeWidth() : 3;
+        boolean shadow = textStyle.getEnableShadow() != null && textStyle.getEnableShadow();
+        int shadowOffsetX = shadow && textStyle.getShadowOffsetX() != null ? textStyle.getShadowOffsetX() : 2;
+        int shadowOffsetY = shadow && textStyle.getShadowOffsetY() != null ? textStyle.getShadowOffsetY() : 2;
+        
+        List<Object> key = null;
+        if (text.length() <= MAX_CACHED_TEXT_LENGTH) {
+            key = List.of(text, width, height, fontName, fontSize, position,
+                opacity, rotation, strokeWidth, String.valueOf(textStyle.getTextColor()).trim(),
+                String.valueOf(textStyle.getStrokeColor()).trim(), shadow,
+                shadow ? String.valueOf(textStyle.getShadowColor()).trim() : "", shadowOffsetX, shadowOffsetY);
+            TextBlock cached;
+            synchronized (layoutCache) {
+                cached = layoutCache.get(key);
+            }
+            if (cached != null) {
+                layoutHits.incrementAndGet();
+                return cached;
+            }
+        }
+        layoutMisses.incrementAndGet();
         
-        FontMetrics fm = g2d.getFontMetrics();
+        // 设置字体
+        Font font = new Font(fontName, Font.BOLD, fontSize);
+        FontMetrics fm = g2d.getFontMetrics(font);
+        FontRenderContext frc = g2d.getFontRenderContext();
         int textHeight = fm.getHeight();
         int lineSpacing = (int) (textHeight * 0.2);
         int maxWidth = width - 80; // 左右各留 40px 边距
         
-        // 计算文字换行
-        List<String> lines = wrapText(text, fm, maxWidth);
+        // 计算文字换行（中文逐字、英文按单词边界，线性时间）
+        List<String> lines = TextWrapper.wrap(text, fm, maxWidth);
         
         // 计算文字总高度
         int totalTextHeight = lines.size() * textHeight + (lines.size() - 1) * lineSpacing;
         
         // 根据位置计算起始 Y 坐标
         int startY;
-        String position = textStyle.getPosition() != null ? textStyle.getPosition() : "center";
-        switch (position.toLowerCase()) {
+        switch (position) {
             case "top":
                 startY = textHeight + 40; // 顶部留 40px
                 break;
@@ -149,58 +367,78 @@ public class ImageComposeService {
                 break;
         }
         
-        // 设置透明度
-        float opacity = textStyle.getOpacity() != null ? textStyle.getOpacity().floatValue() : 1.0f;
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+        // 描边：轮廓外扩为宽度 2 倍半径的圆角描边形状后填充一次，
+        // 效果等价于原来按菱形偏移重复绘制文字，但无论描边多宽都只光栅化一次
+        int strokeRadius = Math.max(2, strokeWidth / 2);
+        BasicStroke stroke = new BasicStroke(strokeRadius * 2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
         
-        // 绘制每一行文字
+        List<TextLine> textLines = new ArrayList<>(lines.size());
         for (int i = 0; i < lines.size(); i++) {
             String line = lines.get(i);
+            if (line.isEmpty()) {
+                continue; // TextLayout 不接受空字符串
+            }
             int textWidth = fm.stringWidth(line);
             int x = (width - textWidth) / 2; // 水平居中
             int y = startY + i * (textHeight + lineSpacing);
             
+            // 旋转（如果需要）以行中心为原点
+            AffineTransform lineRotation = null;
+            if (rotation != 0) {
+                lineRotation = AffineTransform.getRotateInstance(Math.toRadians(rotation), x + textWidth / 2.0, y);
+            }
+            
+            // 字形轮廓每行只生成一次，描边、阴影和主文字都复用同一个 Shape
+            Shape outline = new TextLayout(line, font, frc).getOutline(AffineTransform.getTranslateInstance(x, y));
+            textLines.add(new TextLine(lineRotation, outline, stroke.createStrokedShape(outline)));
+        }
+        
+        Color shadowColor = null;
+        if (shadow) {
+            Color parsed = textStyle.getShadowColorAsColor();
+            shadowColor = new Color(parsed.getRed(), parsed.getGreen(), parsed.getBlue(), 128);
+        }
+        TextBlock block = new TextBlock(key, textLines, AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity),
+            textStyle.getTextColorAsColor(), textStyle.getStrokeColorAsColor(), shadowColor, shadowOffsetX, shadowOffsetY);
+        
+        if (key != null) {
+            synchronized (layoutCache) {
+                layoutCache.put(key, block);
+            }
+        }
+        return block;
+    }
+    
+    /**
+     * 按排版结果绘制文字：描边、阴影（可选）、主文字
+     */
+    private void paintText(Graphics2D g2d, TextBlock block) {
+        // 设置透明度
+        g2d.setComposite(block.composite);
+        
+        for (TextLine line : block.lines) {
             // 保存当前变换
             AffineTransform originalTransform = g2d.getTransform();
-            
-            // 应用旋转（如果需要）
-            if (textStyle.getRotation() != null && textStyle.getRotation() != 0) {
-                double centerX = x + textWidth / 2.0;
-                double centerY = y;
-                AffineTransform rotation = AffineTransform.getRotateInstance(
-                    Math.toRadians(textStyle.getRotation()), centerX, centerY);
-                g2d.transform(rotation);
+            if (line.rotation != null) {
+                g2d.transform(line.rotation);
             }
             
             // 绘制描边
-            Color strokeColor = textStyle.getStrokeColorAsColor();
-            int strokeWidth = textStyle.getStrokeWidth() != null ? textStyle.getStrokeWidth() : 3;
-            g2d.setStroke(new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            g2d.setColor(strokeColor);
-            
-            // 绘制描边（8方向）
-            int strokeRadius = Math.max(2, strokeWidth / 2);
-            for (int dx = -strokeRadius; dx <= strokeRadius; dx++) {
-                for (int dy = -strokeRadius; dy <= strokeRadius; dy++) {
-                    if (Math.abs(dx) + Math.abs(dy) <= strokeRadius && (dx != 0 || dy != 0)) {
-                        g2d.drawString(line, x + dx, y + dy);
-                    }
-                }
-            }
+            g2d.setColor(block.strokeColor);
+            g2d.fill(line.strokeShape);
             
             // 绘制阴影（如果需要）
-            if (textStyle.getEnableShadow() != null && textStyle.getEnableShadow()) {
-                Color shadowColor = textStyle.getShadowColorAsColor();
-                int shadowOffsetX = textStyle.getShadowOffsetX() != null ? textStyle.getShadowOffsetX() : 2;
-                int shadowOffsetY = textStyle.getShadowOffsetY() != null ? textStyle.getShadowOffsetY() : 2;
-                g2d.setColor(new Color(shadowColor.getRed(), shadowColor.getGreen(), shadowColor.getBlue(), 128));
-                g2d.drawString(line, x + shadowOffsetX, y + shadowOffsetY);
+            if (block.shadowColor != null) {
+                g2d.setColor(block.shadowColor);
+                AffineTransform beforeShadow = g2d.getTransform();
+                g2d.translate(block.shadowOffsetX, block.shadowOffsetY);
+                g2d.fill(line.outline);
+                g2d.setTransform(beforeShadow);
             }
             
             // 绘制主文字
-            Color textColor = textStyle.getTextColorAsColor();
-            g2d.setColor(textColor);
-            g2d.drawString(line, x, y);
+            g2d.setColor(block.textColor);
+            g2d.fill(line.outline);
             
             // 恢复变换
             g2d.setTransform(originalTransform);
@@ -208,44 +446,108 @@ public class ImageComposeService {
     }
     
     /**
-     * 文字自动换行
-     * 
-     * @param text 原始文字
-     * @param fm FontMetrics 对象
-     * @param maxWidth 最大宽度
-     * @return 换行后的文字列表
-     */
-    private List<String> wrapText(String text, FontMetrics fm, int maxWidth) {
-        List<String> lines = new java.util.ArrayList<String>();
-        
-        // 如果文字宽度小于最大宽度，直接返回
-        if (fm.stringWidth(text) <= maxWidth) {
-            lines.add(text);
-            return lines;
-        }
-        
-        // 按字符分割并组合
-        StringBuilder currentLine = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            String testLine = currentLine.toString() + c;
-            if (fm.stringWidth(testLine) <= maxWidth) {
-                currentLine.append(c);
-            } else {
-                if (currentLine.length() > 0) {
-                    lines.add(currentLine.toString());
-                    currentLine = new StringBuilder(String.valueOf(c));
-                } else {
-                    // 单个字符就超宽，强制添加
-                    currentLine.append(c);
-                }
-            }
+     * 排版缓存统计信息
+     */
+    public Map<String, Object> getLayoutCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", layoutHits.get());
+        stats.put("misses", layoutMisses.get());
+        synchronized (layoutCache) {
+            stats.put("size", layoutCache.size());
+        }
+        stats.put("maxEntries", layoutCacheMaxEntries);
+        return stats;
+    }
+    
+    /**
+     * 文字精灵缓存统计信息
+     */
+    public Map<String, Object> getSpriteCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", spriteHits.get());
+        stats.put("misses", spriteMisses.get());
+        stats.put("evictions", spriteEvictions.get());
+        synchronized (spriteCache) {
+            stats.put("size", spriteCache.size());
+            stats.put("bytes", spriteBytes);
+        }
+        stats.put("maxBytes", spriteCacheMaxBytes);
+        return stats;
+    }
+    
+    /**
+     * 排版完成的文字块（不可变，可在线程间共享）
+     */
+    private static final class TextBlock {
+        
+        /**
+         * 缓存键，为 null 表示该文字块未被缓存
+         */
+        private final List<Object> key;
+        private final List<TextLine> lines;
+        private final AlphaComposite composite;
+        private final Color textColor;
+        private final Color strokeColor;
+        /**
+         * 阴影颜色（已带半透明），为 null 表示不绘制阴影
+         */
+        private final Color shadowColor;
+        private final int shadowOffsetX;
+        private final int shadowOffsetY;
+        /**
+         * 使用次数，用于决定是否值得预渲染为精灵
+         */
+        private final AtomicInteger uses = new AtomicInteger();
+        
+        TextBlock(List<Object> key, List<TextLine> lines, AlphaComposite composite, Color textColor, Color strokeColor,
+                  Color shadowColor, int shadowOffsetX, int shadowOffsetY) {
+            this.key = key;
+            this.lines = lines;
+            this.composite = composite;
+            this.textColor = textColor;
+            this.strokeColor = strokeColor;
+            this.shadowColor = shadowColor;
+            this.shadowOffsetX = shadowOffsetX;
+            this.shadowOffsetY = shadowOffsetY;
         }
+    }
+    
+    /**
+     * 排版完成的一行文字：画布坐标下的字形轮廓和描边形状
+     */
+    private static final class TextLine {
+        
+        /**
+         * 以行中心为原点的旋转，为 null 表示不旋转
+         */
+        private final AffineTransform rotation;
+        private final Shape outline;
+        private final Shape strokeShape;
         
-        if (currentLine.length() > 0) {
-            lines.add(currentLine.toString());
+        TextLine(AffineTransform rotation, Shape outline, Shape strokeShape) {
+            this.rotation = rotation;
+            this.outline = outline;
+            this.strokeShape = strokeShape;
         }
+    }
+    
+    /**
+     * 预渲染的文字精灵：预乘 ARGB 图片及其在画布上的左上角坐标
+     */
+    private static final class CaptionSprite {
+        
+        private final BufferedImage image;
+        private final int x;
+        private final int y;
         
-        return lines;
+        CaptionSprite(BufferedImage image, int x, int y) {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+        }
+        
+        long bytes() {
+            return (long) image.getWidth() * image.getHeight() * Integer.BYTES;
+        }
     }
 }
-
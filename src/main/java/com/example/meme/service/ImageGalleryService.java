@@ -11,8 +11,11 @@ import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * 图库服务
@@ -28,6 +31,18 @@ public class ImageGalleryService {
     @Value("${gallery.pixabay.api-key:}")
     private String pixabayApiKey;
     
+    /**
+     * 允许下载图库图片的域名（逗号分隔，匹配域名本身及其子域名），默认只允许 Pixabay
+     */
+    @Value("${gallery.download.allowed-hosts:pixabay.com}")
+    private String[] downloadAllowedHosts = {"pixabay.com"};
+    
+    /**
+     * 下载图库图片的超时时间（毫秒），包括连接和读取
+     */
+    @Value("${gallery.download.timeout-ms:15000}")
+    private long downloadTimeoutMs = 15000;
+    
     // Pixabay API 基础URL
     private static final String PIXABAY_API_BASE = "https://pixabay.com/api";
     
@@ -404,19 +419,50 @@ public class ImageGalleryService {
     
     /**
      * 下载图片并转换为字节数组
-     * 支持大文件下载（最大 10MB）
+     * 只下载白名单域名下的图片，限制总耗时，不跟随重定向，超过 10MB 时失败
      * 
      * @param imageUrl 图片URL
      * @return 图片字节数组
+     * @throws IllegalArgumentException URL 不是白名单域名下的 HTTP/HTTPS 地址
      */
     public byte[] downloadImage(String imageUrl) throws Exception {
+        if (!isDownloadable(imageUrl)) {
+            throw new IllegalArgumentException("只支持图库中的图片 URL");
+        }
         return webClient.get()
                 .uri(URI.create(imageUrl))
                 .retrieve()
                 .bodyToMono(byte[].class)
+                .timeout(Duration.ofMillis(downloadTimeoutMs))
                 .block();
     }
+    
+    /**
+     * 是否可以通过 {@link #downloadImage(String)} 下载：白名单域名下、不含用户信息的 HTTP/HTTPS URL
+     */
+    public boolean isDownloadable(String imageUrl) {
+        if (imageUrl == null) {
+            return false;
+        }
+        URI uri;
+        try {
+            uri = new URI(imageUrl);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (host == null || uri.getUserInfo() != null
+                || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return false;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        for (String allowed : downloadAllowedHosts) {
+            String domain = allowed.trim().toLowerCase(Locale.ROOT);
+            if (!domain.isEmpty() && (host.equals(domain) || host.endsWith("." + domain))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
-
-
-
@@ -2,19 +2,15 @@ package com.example.meme.service;
 
 import com.example.meme.client.AiClient;
 import com.example.meme.model.EmotionType;
+import com.example.meme.model.GenerationStage;
 import com.example.meme.model.ImageGenerateResult;
+import com.example.meme.model.ImageUnderstandResult;
+import com.example.meme.model.OutputFormat;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Base64;
 
 /**
@@ -28,8 +24,16 @@ public class ImageGenerateService {
     @Autowired
     private AiClient aiClient;
     
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    @Autowired
+    private ImageStorageService imageStorageService;
+    
+    @Autowired
+    private AiResultCache aiResultCache;
+    
+    /**
+     * 缓存命中时 synthesized 阶段的补充信息（代替模型名称）
+     */
+    private static final String CACHE_DETAIL = "cache";
     
     /**
      * 生成情绪表情图片
@@ -39,59 +43,125 @@ public class ImageGenerateService {
      * @return 生成的表情包图片 URL
      */
     public String generateEmotionImage(byte[] imageBytes, EmotionType emotionType) throws IOException {
+        return generateEmotionImage(imageBytes, emotionType, OutputFormat.AUTO);
+    }
+    
+    /**
+     * 生成情绪表情图片
+     * 
+     * @param imageBytes 原始图片字节数组
+     * @param emotionType 情绪类型
+     * @param format AI 返回 Base64 图片时本地保存的格式（返回 OSS URL 时不重新编码）
+     * @return 生成的表情包图片 URL
+     */
+    public String generateEmotionImage(byte[] imageBytes, EmotionType emotionType, OutputFormat format) throws IOException {
+        GeneratedImage generated = generate(imageBytes, emotionType);
+        String imageUrl = generated.persist(format);
+        if (generated.isRemote()) {
+            // OSS URL 直接返回，前端可以直接显示
+            log.info("返回 OSS URL: {}", imageUrl);
+        }
+        return imageUrl;
+    }
+    
+    /**
+     * 生成情绪表情图片（不保存）
+     * 返回的结果按需解码、按需保存：后续还要加滤镜或文字时只解码，中间结果不落盘、不重新编码
+     * 
+     * @param imageBytes 原始图片字节数组
+     * @param emotionType 情绪类型
+     * @return AI 生成的图片
+     */
+    public GeneratedImage generate(byte[] imageBytes, EmotionType emotionType) throws IOException {
+        return generate(imageBytes, emotionType, GenerationListener.NONE);
+    }
+    
+    /**
+     * 生成情绪表情图片（不保存），图片理解和图片生成完成时分别通知监听器
+     * 
+     * @param imageBytes 原始图片字节数组
+     * @param emotionType 情绪类型
+     * @param listener 进度监听器
+     * @return AI 生成的图片
+     */
+    public GeneratedImage generate(byte[] imageBytes, EmotionType emotionType, GenerationListener listener)
+            throws IOException {
+        GeneratedImage cached = findCached(imageBytes, emotionType);
+        if (cached != null) {
+            listener.onStage(GenerationStage.UNDERSTOOD, null);
+            listener.onStage(GenerationStage.SYNTHESIZED, CACHE_DETAIL);
+            return cached;
+        }
+        ImageUnderstandResult understandResult = understand(imageBytes);
+        listener.onStage(GenerationStage.UNDERSTOOD, understandResult.getDescription());
+        return generate(imageBytes, understandResult, emotionType, listener);
+    }
+    
+    /**
+     * 查找相同图片、相同情绪之前的 AI 生成结果（见 {@link AiResultCache}）
+     * 
+     * @return 缓存的结果，未命中或未启用缓存时返回 null
+     */
+    public GeneratedImage findCached(byte[] imageBytes, EmotionType emotionType) {
+        if (!aiResultCache.isEnabled()) {
+            return null;
+        }
+        byte[] cached = aiResultCache.get(cacheKey(imageBytes, emotionType));
+        if (cached == null) {
+            return null;
+        }
+        log.info("AI 结果缓存命中: {}", emotionType.getChineseName());
+        return GeneratedImage.fromBytes(cached, "emotion_" + emotionType.getEnglishName(), imageStorageService);
+    }
+    
+    /**
+     * 调用 AI 理解原图内容
+     * 同一张图片生成多种情绪时只需理解一次，理解结果可用于每种情绪的生成
+     * 
+     * @param imageBytes 原始图片字节数组
+     * @return 图片理解结果
+     */
+    public ImageUnderstandResult understand(byte[] imageBytes) {
         // 将图片转换为 Base64
         String imageBase64 = Base64.getEncoder().encodeToString(imageBytes);
-        
-        // 调用 AI 生成表情图片
-        ImageGenerateResult result = aiClient.generateEmotionImage(imageBase64, emotionType);
+        return aiClient.understandImage(imageBase64);
+    }
+    
+    /**
+     * 根据原图的理解结果生成情绪表情图片（不保存），生成完成时通知监听器（附实际使用的模型）
+     * 生成的图片字节在后台写入 AI 结果缓存（AI 返回 OSS URL 时需先下载），不等待写入，写入失败不影响本次结果；
+     * 图片理解失败时使用的是模拟描述，生成结果不代表这张图片，不写入缓存
+     * 
+     * @param imageBytes 原始图片字节数组（用于缓存键）
+     * @param understandResult 原图理解结果
+     * @param emotionType 情绪类型
+     * @param listener 进度监听器
+     * @return AI 生成的图片
+     */
+    public GeneratedImage generate(byte[] imageBytes, ImageUnderstandResult understandResult, EmotionType emotionType,
+                                   GenerationListener listener) throws IOException {
+        ImageGenerateResult result = aiClient.synthesizeEmotionImage(understandResult, emotionType);
         
         String imageData = result.getImageUrl();
         if (imageData == null || imageData.isEmpty()) {
             throw new IOException("AI 未能生成图片，请稍后重试");
         }
-        
-        // 如果是 HTTP/HTTPS URL（如 OSS URL），直接返回，浏览器可以直接显示
-        if (imageData.startsWith("http://") || imageData.startsWith("https://")) {
-            log.info("返回 OSS URL: {}", imageData);
-            return imageData;  // 直接返回 OSS URL，前端可以直接显示
+        if (!GeneratedImage.isRemoteUrl(imageData) && !imageData.startsWith("data:image")) {
+            throw new IOException("不支持的图片格式，期望 HTTP URL 或 Base64 格式");
         }
-        
-        // 处理 Base64 图片数据
-        if (imageData.startsWith("data:image")) {
-            // 提取 Base64 部分
-            String base64Data = imageData.substring(imageData.indexOf(",") + 1);
-            byte[] generatedImageBytes = Base64.getDecoder().decode(base64Data);
-            
-            // 保存图片到本地
-            String fileName = "emotion_" + emotionType.getEnglishName() + "_" + System.currentTimeMillis() + ".png";
-            
-            // 如果 uploadDir 是相对路径，转换为绝对路径（项目根目录）
-            Path outputDir;
-            if (Paths.get(uploadDir).isAbsolute()) {
-                outputDir = Paths.get(uploadDir);
-            } else {
-                String projectRoot = System.getProperty("user.dir");
-                outputDir = Paths.get(projectRoot, uploadDir);
-            }
-            
-            Path outputPath = outputDir.resolve(fileName);
-            
-            // 确保目录存在
-            Files.createDirectories(outputPath.getParent());
-            
-            // 读取并保存图片
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(generatedImageBytes));
-            if (image == null) {
-                throw new IOException("无法读取生成的图片数据");
-            }
-            
-            ImageIO.write(image, "png", outputPath.toFile());
-            
-            // 返回本地访问 URL
-            return "/output/" + fileName;
+        listener.onStage(GenerationStage.SYNTHESIZED, result.getModel());
+        GeneratedImage generated = new GeneratedImage(imageData, "emotion_" + emotionType.getEnglishName(),
+                imageStorageService);
+        if (understandResult.isFallback()) {
+            log.warn("图片理解使用了模拟结果，{}表情不写入 AI 结果缓存", emotionType.getChineseName());
+        } else if (aiResultCache.isEnabled()) {
+            // 在后台取字节（OSS 结果需要下载）并写入缓存，不延长本次请求；后续流程也要解码时只下载一次
+            aiResultCache.putLater(cacheKey(imageBytes, emotionType), generated::getEncodedBytes);
         }
-        
-        throw new IOException("不支持的图片格式，期望 HTTP URL 或 Base64 格式");
+        return generated;
+    }
+    
+    private String cacheKey(byte[] imageBytes, EmotionType emotionType) {
+        return AiResultCache.key(imageBytes, emotionType, aiClient.getImageModelSignature());
     }
 }
-
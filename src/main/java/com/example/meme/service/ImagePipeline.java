@@ -0,0 +1,68 @@
+package com.example.meme.service;
+
+import com.example.meme.util.PixelBufferPool;
+
+import java.awt.image.BufferedImage;
+import java.util.function.UnaryOperator;
+
+/**
+ * 单次请求内的图片处理流水线
+ * 携带解码后的图片依次经过滤镜、文字合成等步骤，步骤之间直接传递 BufferedImage，不做中间编解码；
+ * 每一步产生的新图片（来自像素缓冲池）由流水线持有，被下一步替换或流水线关闭时归还缓冲池。
+ * 原图不归流水线所有，不会被修改或归还。
+ */
+final class ImagePipeline implements AutoCloseable {
+
+    private final PixelBufferPool bufferPool;
+
+    private final BufferedImage source;
+
+    private BufferedImage current;
+
+    ImagePipeline(BufferedImage source, PixelBufferPool bufferPool) {
+        this.source = source;
+        this.current = source;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * 执行一个处理步骤
+     *
+     * @param step 处理步骤：返回新图片，或原地修改后返回传入的图片（只允许修改流水线持有的图片，见 {@link #ownsCurrent()}）
+     * @return 当前流水线
+     */
+    ImagePipeline apply(UnaryOperator<BufferedImage> step) {
+        BufferedImage next = step.apply(current);
+        if (next != current) {
+            releaseCurrent();
+            current = next;
+        }
+        return this;
+    }
+
+    /**
+     * 当前图片是否为流水线持有的中间结果（可以原地修改）
+     */
+    boolean ownsCurrent() {
+        return current != source;
+    }
+
+    /**
+     * 当前处理结果，流水线关闭后不能再使用
+     */
+    BufferedImage current() {
+        return current;
+    }
+
+    @Override
+    public void close() {
+        releaseCurrent();
+        current = source;
+    }
+
+    private void releaseCurrent() {
+        if (current != source && bufferPool != null) {
+            bufferPool.release(current);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.meme.service;
+
+import com.example.meme.model.OutputFormat;
+import com.example.meme.util.ImageEncoder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片存储服务
+ * 负责把生成的图片编码保存到输出目录并返回访问 URL，文件扩展名与实际编码格式一致；也负责读取已保存或远程的图片。
+ * 远程图片只从白名单域名（如 AI 生成结果所在的 OSS）下载，并限制超时和大小，不跟随重定向。
+ */
+@Service
+public class ImageStorageService {
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    /**
+     * 允许下载远程图片的域名（逗号分隔，匹配域名本身及其子域名），默认为 AI 生成结果所在的阿里云 OSS
+     */
+    @Value("${file.remote.allowed-hosts:aliyuncs.com}")
+    private String[] remoteAllowedHosts = {"aliyuncs.com"};
+
+    /**
+     * 下载远程图片的连接超时（毫秒）
+     */
+    @Value("${file.remote.connect-timeout-ms:5000}")
+    private int remoteConnectTimeoutMs = 5000;
+
+    /**
+     * 下载远程图片的读取超时（毫秒）
+     */
+    @Value("${file.remote.read-timeout-ms:15000}")
+    private int remoteReadTimeoutMs = 15000;
+
+    /**
+     * 远程图片的最大字节数（默认 20MB）
+     */
+    @Value("${file.remote.max-bytes:20971520}")
+    private int remoteMaxBytes = 20 * 1024 * 1024;
+
+    @Autowired
+    private ImageEncoder imageEncoder;
+
+    /**
+     * 文件名序号
+     */
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * 以 PNG 格式保存图片
+     *
+     * @param image 图片
+     * @param prefix 文件名前缀，如 meme、preview
+     * @return 访问 URL（/output/xxx.png）
+     */
+    public String savePng(BufferedImage image, String prefix) throws IOException {
+        return save(image, prefix, OutputFormat.PNG);
+    }
+
+    /**
+     * 按指定格式保存图片
+     * 先写入临时文件，编码完成后再改名为带实际扩展名的文件，避免访问到写了一半的图片
+     *
+     * @param image 图片
+     * @param prefix 文件名前缀，如 meme、preview
+     * @param format 输出格式，AUTO 时不透明图片保存为 JPEG，含透明像素时保存为 PNG
+     * @return 访问 URL（/output/xxx.jpg 或 /output/xxx.png）
+     */
+    public String save(BufferedImage image, String prefix, OutputFormat format) throws IOException {
+        // 并发保存时同一毫秒内可能有多张图片，加序号避免重名覆盖
+        String baseName = prefix + "_" + System.currentTimeMillis() + "_" + Math.floorMod(sequence.getAndIncrement(), 10000);
+        Path outputDir = resolveOutputDir();
+
+        // 确保目录存在
+        Files.createDirectories(outputDir);
+
+        Path tempPath = Files.createTempFile(outputDir, baseName + "_", ".tmp");
+        try {
+            OutputFormat written;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+                written = imageEncoder.encode(image, format, out);
+            }
+            String fileName = baseName + "." + written.getExtension();
+            Files.move(tempPath, outputDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            return "/output/" + fileName;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * 原样保存已编码的图片字节（不解码、不重新编码）
+     *
+     * @param bytes 已编码的图片字节
+     * @param prefix 文件名前缀，如 meme、preview
+     * @param format 字节的实际格式，决定文件扩展名
+     * @return 访问 URL（/output/xxx.jpg 或 /output/xxx.png）
+     */
+    public String saveEncoded(byte[] bytes, String prefix, OutputFormat format) throws IOException {
+        String baseName = prefix + "_" + System.currentTimeMillis() + "_" + Math.floorMod(sequence.getAndIncrement(), 10000);
+        Path outputDir = resolveOutputDir();
+        Files.createDirectories(outputDir);
+
+        Path tempPath = Files.createTempFile(outputDir, baseName + "_", ".tmp");
+        try {
+            Files.write(tempPath, bytes);
+            String fileName = baseName + "." + format.getExtension();
+            Files.move(tempPath, outputDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            return "/output/" + fileName;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * 读取图片（支持本服务保存的 /output/ 路径和白名单域名下的 HTTP/HTTPS URL）
+     *
+     * @param imageUrl 图片 URL
+     * @return 图片字节数组
+     * @throws IOException 下载或读取失败，或 URL 不在允许范围内
+     */
+    public byte[] load(String imageUrl) throws IOException {
+        // 如果是 HTTP/HTTPS URL，需要下载
+        if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
+            return download(imageUrl);
+        }
+
+        // 如果是本地路径，直接读取
+        Path filePath = resolveOutputPath(imageUrl);
+        if (filePath == null) {
+            throw new IOException("不支持的图片 URL 格式: " + imageUrl);
+        }
+        return Files.readAllBytes(filePath);
+    }
+
+    /**
+     * 是否可以通过 {@link #load(String)} 读取：输出目录内的 /output/ 路径，或白名单域名下的 HTTP/HTTPS URL
+     */
+    public boolean isLoadable(String imageUrl) {
+        if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
+            return remoteHost(imageUrl) != null;
+        }
+        return resolveOutputPath(imageUrl) != null;
+    }
+
+    /**
+     * 下载白名单域名下的远程图片：限制连接和读取超时，不跟随重定向，超过最大字节数时放弃
+     */
+    private byte[] download(String imageUrl) throws IOException {
+        String host = remoteHost(imageUrl);
+        if (host == null) {
+            throw new IOException("不允许下载该域名的图片: " + imageUrl);
+        }
+        HttpURLConnection connection = (HttpURLConnection) URI.create(imageUrl).toURL().openConnection();
+        connection.setConnectTimeout(remoteConnectTimeoutMs);
+        connection.setReadTimeout(remoteReadTimeoutMs);
+        connection.setInstanceFollowRedirects(false);
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status);
+            }
+            if (connection.getContentLengthLong() > remoteMaxBytes) {
+                throw new IOException("图片过大: " + connection.getContentLengthLong() + " 字节");
+            }
+            try (InputStream in = connection.getInputStream()) {
+                byte[] bytes = in.readNBytes(remoteMaxBytes + 1);
+                if (bytes.length > remoteMaxBytes) {
+                    throw new IOException("图片超过 " + remoteMaxBytes + " 字节");
+                }
+                return bytes;
+            }
+        } catch (IOException e) {
+            throw new IOException("下载图片失败: " + e.getMessage(), e);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * 解析远程 URL 的域名，不是 HTTP/HTTPS 或域名不在白名单内时返回 null
+     */
+    private String remoteHost(String imageUrl) {
+        URI uri;
+        try {
+            uri = new URI(imageUrl);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (host == null || uri.getUserInfo() != null
+                || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return null;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        for (String allowed : remoteAllowedHosts) {
+            String domain = allowed.trim().toLowerCase(Locale.ROOT);
+            if (!domain.isEmpty() && (host.equals(domain) || host.endsWith("." + domain))) {
+                return host;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把 /output/ 路径解析为输出目录内的文件，不是 /output/ 路径或越出输出目录时返回 null
+     */
+    private Path resolveOutputPath(String imageUrl) {
+        if (!imageUrl.startsWith("/output/")) {
+            return null;
+        }
+        Path outputDir = resolveOutputDir().normalize();
+        Path filePath = outputDir.resolve(imageUrl.substring("/output/".length())).normalize();
+        return filePath.startsWith(outputDir) ? filePath : null;
+    }
+
+    /**
+     * 解析输出目录：相对路径基于项目根目录
+     */
+    public Path resolveOutputDir() {
+        if (Paths.get(uploadDir).isAbsolute()) {
+            return Paths.get(uploadDir);
+        }
+        String projectRoot = System.getProperty("user.dir");
+        return Paths.get(projectRoot, uploadDir);
+    }
+}
@@ -1,18 +1,44 @@
 package com.example.meme.service;
 
+import com.example.meme.model.EmotionImageResult;
 import com.example.meme.model.EmotionType;
+import com.example.meme.model.FilterChain;
+import com.example.meme.model.FilterPreviewSheet;
 import com.example.meme.model.FilterType;
+import com.example.meme.model.GenerationStage;
 import com.example.meme.model.ImageUnderstandResult;
+import com.example.meme.model.OutputFormat;
+import com.example.meme.model.TextLayer;
 import com.example.meme.model.TextStyle;
+import com.example.meme.util.PixelBufferPool;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.imageio.ImageIO;
 
 /**
@@ -35,8 +61,52 @@ public class MemeService {
     @Autowired
     private FilterService filterService;
     
+    @Autowired
+    private ImageStorageService imageStorageService;
+    
+    @Autowired
+    private PixelBufferPool bufferPool;
+    
+    @Autowired
+    private GenerationCoalescer generationCoalescer;
+    
+    /**
+     * 批量生成时同时进行的 AI 图片生成数（所有批量请求共享）
+     */
+    @Value("${batch.parallelism:4}")
+    private int batchParallelism = 4;
+    
+    private ExecutorService batchExecutor;
+    
+    /**
+     * 滤镜预览格子默认边长与每行格子数
+     */
+    private static final int DEFAULT_PREVIEW_TILE_SIZE = 128;
+    private static final int PREVIEW_COLUMNS = 5;
+    
+    /**
+     * 单张图片最多的文字图层数量
+     */
+    private static final int MAX_TEXT_LAYERS = 10;
+    
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, batchParallelism);
+        AtomicInteger index = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-synthesis-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+    
     /**
      * 生成情绪表情图片（支持样式和滤镜）
      * 
@@ -54,50 +124,349 @@ public class MemeService {
             String customText,
             String textStyleJson,
             FilterType filterType) throws IOException {
+        return generateEmotionImage(imageFile, emotionType, customText, textStyleJson, FilterChain.of(filterType));
+    }
+    
+    /**
+     * 生成情绪表情图片（支持样式和滤镜链）
+     * 
+     * @param imageFile 上传的图片文件
+     * @param emotionType 情绪类型
+     * @param customText 自定义文字（可选）
+     * @param textStyleJson 文字样式JSON（可选）
+     * @param filterChain 滤镜链（可选），相邻的点滤镜会合并为一次遍历
+     * @return 生成的表情包图片 URL
+     * @throws IOException 文件处理异常
+     */
+    public String generateEmotionImage(
+            MultipartFile imageFile, 
+            EmotionType emotionType, 
+            String customText,
+            String textStyleJson,
+            FilterChain filterChain) throws IOException {
+        return generateEmotionImage(imageFile, emotionType, resolveTextLayers(customText, textStyleJson, null),
+                filterChain, OutputFormat.AUTO);
+    }
+    
+    /**
+     * 生成情绪表情图片（支持多个文字图层和滤镜链）
+     * AI 生成的图片只解码一次：滤镜和所有文字图层都在内存中的同一张图片上完成，最后只编码保存一次
+     * 
+     * @param imageFile 上传的图片文件
+     * @param emotionType 情绪类型
+     * @param layers 文字图层（可为空），按顺序绘制
+     * @param filterChain 滤镜链（可选），相邻的点滤镜会合并为一次遍历
+     * @param format 输出格式，AUTO 时不透明图片保存为 JPEG，含透明像素时保存为 PNG（AI 直接返回的 OSS URL 不重新编码）
+     * @return 生成的表情包图片 URL（扩展名与实际格式一致）
+     * @throws IOException 文件处理异常
+     */
+    public String generateEmotionImage(
+            MultipartFile imageFile, 
+            EmotionType emotionType, 
+            List<TextLayer> layers,
+            FilterChain filterChain,
+            OutputFormat format) throws IOException {
+        return generateEmotionImage(imageFile, emotionType, layers, filterChain, format, GenerationListener.NONE);
+    }
+    
+    /**
+     * 生成情绪表情图片，每个阶段完成时通知监听器
+     * 阶段依次为：校验、图片理解、图片生成（附实际使用的模型）、滤镜、文字合成、保存（附图片 URL），没有滤镜或文字时跳过对应阶段
+     * 
+     * @param imageFile 上传的图片文件
+     * @param emotionType 情绪类型
+     * @param layers 文字图层（可为空），按顺序绘制
+     * @param filterChain 滤镜链（可选）
+     * @param format 输出格式
+     * @param listener 进度监听器
+     * @return 生成的表情包图片 URL
+     * @throws IOException 文件处理异常
+     */
+    public String generateEmotionImage(
+            MultipartFile imageFile, 
+            EmotionType emotionType, 
+            List<TextLayer> layers,
+            FilterChain filterChain,
+            OutputFormat format,
+            GenerationListener listener) throws IOException {
         // 1. 验证文件
         validateImageFile(imageFile);
         
         // 2. 读取图片字节
         byte[] imageBytes = imageFile.getBytes();
+        listener.onStage(GenerationStage.VALIDATED, null);
         
-        // 3. 调用 AI 生成情绪表情图片
-        String imageUrl = imageGenerateService.generateEmotionImage(imageBytes, emotionType);
+        // 3. 调用 AI 生成情绪表情图片并处理；同时进行中的相同请求（相同图片和参数）合并为一次生成
+        String key = coalesceKey(imageBytes, emotionType, layers, filterChain, format);
+        return generationCoalescer.execute(key, listener, flightListener -> {
+            GeneratedImage generated = imageGenerateService.generate(imageBytes, emotionType, flightListener);
+            return processGenerated(generated, emotionType, layers, filterChain, format, flightListener);
+        });
+    }
+    
+    /**
+     * 同一张图片批量生成多种情绪的表情图片
+     * 图片只校验、理解一次（所有情绪都命中 AI 结果缓存时不做理解，理解失败时各情绪分别重试），各情绪的 AI 图片生成在共享的有界线程池中并发进行（并发数由 batch.parallelism 配置），
+     * 之后分别加滤镜、文字并保存；某个情绪失败只记录在该情绪的结果中，不影响其他情绪
+     * 
+     * @param imageFile 上传的图片文件
+     * @param emotionTypes 情绪类型（不能为空）
+     * @param layers 文字图层（可为空），所有情绪使用相同的文字
+     * @param filterChain 滤镜链（可选）
+     * @param format 输出格式
+     * @return 每个情绪的结果，顺序与 emotionTypes 一致
+     * @throws IOException 文件处理异常
+     */
+    public List<EmotionImageResult> generateEmotionImages(
+            MultipartFile imageFile,
+            List<EmotionType> emotionTypes,
+            List<TextLayer> layers,
+            FilterChain filterChain,
+            OutputFormat format) throws IOException {
+        if (emotionTypes == null || emotionTypes.isEmpty()) {
+            throw new IllegalArgumentException("请至少选择一种情绪");
+        }
+        validateImageFile(imageFile);
         
-        log.info("AI 生成的{}表情图片: {}", emotionType.getChineseName(), imageUrl);
+        byte[] imageBytes = imageFile.getBytes();
         
-        // 4. 下载生成的图片（如果是 OSS URL）
-        byte[] generatedImageBytes = downloadImage(imageUrl);
+        // 1. 先查 AI 结果缓存，只有存在未命中的情绪时才做一次图片理解
+        Map<EmotionType, GeneratedImage> cached = new HashMap<>();
+        for (EmotionType emotionType : emotionTypes) {
+            GeneratedImage generated = imageGenerateService.findCached(imageBytes, emotionType);
+            if (generated != null) {
+                cached.put(emotionType, generated);
+            }
+        }
+        ImageUnderstandResult understandResult = null;
+        if (cached.size() < emotionTypes.size()) {
+            understandResult = imageGenerateService.understand(imageBytes);
+            log.info("批量生成 {} 种情绪（缓存命中 {} 种），图片理解结果: {}", emotionTypes.size(), cached.size(),
+                    understandResult.getDescription());
+        }
+        ImageUnderstandResult understood = understandResult;
         
-        // 5. 应用滤镜（如果需要）
-        if (filterType != null && filterType != FilterType.NONE) {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(generatedImageBytes));
-            BufferedImage filteredImage = filterService.applyFilter(image, filterType);
-            
-            // 将处理后的图片转换为字节数组
-            java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-            ImageIO.write(filteredImage, "png", baos);
-            generatedImageBytes = baos.toByteArray();
-            log.info("已应用滤镜: {}", filterType.getName());
+        // 2. 各情绪并发生成
+        List<Future<String>> futures = new ArrayList<>();
+        for (EmotionType emotionType : emotionTypes) {
+            futures.add(batchExecutor.submit(() -> {
+                GeneratedImage generated = cached.get(emotionType);
+                if (generated == null) {
+                    // 共享的理解失败（模拟结果）时各情绪分别重新理解，避免一次临时失败影响所有情绪
+                    ImageUnderstandResult own = understood.isFallback()
+                            ? imageGenerateService.understand(imageBytes) : understood;
+                    generated = imageGenerateService.generate(imageBytes, own, emotionType, GenerationListener.NONE);
+                }
+                return processGenerated(generated, emotionType, layers, filterChain, format, GenerationListener.NONE);
+            }));
         }
         
-        // 6. 如果提供了自定义文字，将文字绘制到生成的图片上
-        if (customText != null && !customText.trim().isEmpty()) {
-            // 解析文字样式
-            TextStyle textStyle = parseTextStyle(textStyleJson);
+        // 3. 按顺序汇总结果，单个情绪的失败只记录原因
+        List<EmotionImageResult> results = new ArrayList<>();
+        for (int i = 0; i < emotionTypes.size(); i++) {
+            EmotionType emotionType = emotionTypes.get(i);
+            try {
+                results.add(EmotionImageResult.success(emotionType, futures.get(i).get()));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                log.warn("批量生成{}表情失败: {}", emotionType.getChineseName(), cause.getMessage());
+                results.add(EmotionImageResult.failure(emotionType, cause instanceof IllegalArgumentException
+                        ? cause.getMessage() : "生成表情图片失败: " + cause.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                throw new IOException("批量生成被中断", e);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 解析逗号分隔的情绪类型列表（去重并保持顺序）
+     * 
+     * @param emotions 如 happy,sad,angry
+     * @return 情绪类型列表
+     * @throws IllegalArgumentException 为空或包含不支持的情绪
+     */
+    public List<EmotionType> resolveEmotions(String emotions) {
+        Set<EmotionType> types = new LinkedHashSet<>();
+        if (emotions != null) {
+            for (String name : emotions.split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                EmotionType type = Arrays.stream(EmotionType.values())
+                        .filter(candidate -> candidate.getEnglishName().equalsIgnoreCase(trimmed))
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("不支持的情绪类型: " + trimmed));
+                types.add(type);
+            }
+        }
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("请至少选择一种情绪");
+        }
+        return new ArrayList<>(types);
+    }
+    
+    /**
+     * 请求合并的键：图片内容和规范化后的参数（情绪、文字图层及其完整样式、滤镜链、输出格式）的 SHA-256
+     */
+    private String coalesceKey(byte[] imageBytes, EmotionType emotionType, List<TextLayer> layers,
+                               FilterChain filterChain, OutputFormat format) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(imageBytes);
+        StringBuilder params = new StringBuilder()
+                .append('\n').append(emotionType.getEnglishName())
+                .append('\n').append(format.getCode())
+                .append('\n').append(filterChain != null ? filterChain.getCode() : "");
+        if (layers != null) {
+            for (TextLayer layer : layers) {
+                params.append('\n').append(layer.getText())
+                        .append('\n').append(objectMapper.writeValueAsString(layer.resolveStyle()));
+            }
+        }
+        digest.update(params.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    /**
+     * AI 生成之后的处理：不需要滤镜和文字时直接作为最终结果保存（OSS URL 直接返回），
+     * 否则只解码一次，在内存中依次加滤镜、文字，最后只编码保存一次
+     */
+    private String processGenerated(
+            GeneratedImage generated,
+            EmotionType emotionType,
+            List<TextLayer> layers,
+            FilterChain filterChain,
+            OutputFormat format,
+            GenerationListener listener) throws IOException {
+        boolean hasFilter = filterChain != null && !filterChain.isEmpty();
+        boolean hasText = layers != null && !layers.isEmpty();
+        
+        if (!hasFilter && !hasText) {
+            String imageUrl = generated.persist(format);
+            log.info("AI 生成的{}表情图片: {}", emotionType.getChineseName(), imageUrl);
+            listener.onStage(GenerationStage.STORED, imageUrl);
+            return imageUrl;
+        }
+        
+        // 需要加滤镜或文字时，AI 结果只解码一次、不落盘，之后在内存中依次处理，最后只编码一次
+        BufferedImage image = generated.getImage();
+        log.info("AI 生成的{}表情图片: {}x{}", emotionType.getChineseName(), image.getWidth(), image.getHeight());
+        
+        String imageUrl;
+        try (ImagePipeline pipeline = new ImagePipeline(image, bufferPool)) {
+            // 应用滤镜（如果需要）
+            if (hasFilter) {
+                pipeline.apply(current -> filterService.applyFilterChain(current, filterChain));
+                log.info("已应用滤镜: {}", filterChain.getName());
+                listener.onStage(GenerationStage.FILTERED, filterChain.getName());
+            }
+            
+            // 将所有文字图层绘制到同一张图片上；滤镜结果归流水线所有，直接在上面绘制
+            if (hasText) {
+                boolean inPlace = pipeline.ownsCurrent();
+                pipeline.apply(current -> inPlace
+                        ? imageComposeService.drawLayers(current, layers)
+                        : imageComposeService.renderLayers(current, layers));
+                log.info("已添加 {} 个文字图层", layers.size());
+                listener.onStage(GenerationStage.COMPOSED, String.valueOf(layers.size()));
+            }
             
-            // 将文字绘制到图片上
-            imageUrl = imageComposeService.composeImage(generatedImageBytes, customText.trim(), textStyle);
-            log.info("已添加自定义文字: {}", customText);
+            // 编码保存
+            imageUrl = imageStorageService.save(pipeline.current(), "meme", format);
         }
+        listener.onStage(GenerationStage.STORED, imageUrl);
         
         return imageUrl;
     }
     
+    /**
+     * 汇总请求中的文字图层
+     * layers 为 JSON 数组，每项格式：{"text":"上方文字","position":"top","rotation":0,"style":{...TextStyle}}；
+     * 同时提供了 text 时，text 按 textStyle 作为最后一个图层
+     * 
+     * @param customText 自定义文字（可选）
+     * @param textStyleJson 文字样式JSON（可选）
+     * @param layersJson 文字图层JSON数组（可选）
+     * @return 需要绘制的文字图层（空白文字的图层已去掉）
+     * @throws IllegalArgumentException 图层 JSON 格式错误或图层数量超过上限
+     */
+    public List<TextLayer> resolveTextLayers(String customText, String textStyleJson, String layersJson) {
+        List<TextLayer> layers = new ArrayList<>();
+        if (layersJson != null && !layersJson.trim().isEmpty()) {
+            TextLayer[] parsed;
+            try {
+                parsed = objectMapper.readValue(layersJson, TextLayer[].class);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("文字图层格式错误: " + e.getMessage());
+            }
+            for (TextLayer layer : parsed) {
+                if (layer != null && layer.hasText()) {
+                    layer.setText(layer.getText().trim());
+                    layers.add(layer);
+                }
+            }
+        }
+        if (customText != null && !customText.trim().isEmpty()) {
+            layers.add(new TextLayer(customText.trim(), parseTextStyle(textStyleJson)));
+        }
+        if (layers.size() > MAX_TEXT_LAYERS) {
+            throw new IllegalArgumentException("文字图层最多 " + MAX_TEXT_LAYERS + " 个");
+        }
+        return layers;
+    }
+    
     /**
      * 生成情绪表情图片（兼容旧版本）
      */
     public String generateEmotionImage(MultipartFile imageFile, EmotionType emotionType, String customText) throws IOException {
-        return generateEmotionImage(imageFile, emotionType, customText, null, null);
+        return generateEmotionImage(imageFile, emotionType, customText, null, FilterChain.empty());
+    }
+    
+    /**
+     * 生成滤镜预览拼图
+     * 原图只缩放一次，所有滤镜在缩略图上渲染并拼成一张图，供滤镜选择器展示
+     * 
+     * @param imageFile 上传的图片文件（与 imageUrl 二选一）
+     * @param imageUrl 已生成结果的 URL（/output/ 路径，或 AI 返回的白名单域名下的 HTTP 地址）
+     * @param tileSize 格子边长（32-256，默认 128）
+     * @return 预览拼图信息
+     * @throws IOException 图片读取或保存失败
+     */
+    public FilterPreviewSheet generateFilterPreview(MultipartFile imageFile, String imageUrl, Integer tileSize) throws IOException {
+        byte[] imageBytes;
+        if (imageFile != null && !imageFile.isEmpty()) {
+            validateImageFile(imageFile);
+            imageBytes = imageFile.getBytes();
+        } else if (imageUrl != null && !imageUrl.trim().isEmpty()) {
+            // 只读取本服务生成的结果：/output/ 路径或 AI 结果所在的白名单域名，不代为请求任意地址
+            if (!imageStorageService.isLoadable(imageUrl.trim())) {
+                throw new IllegalArgumentException("只支持本服务生成的图片 URL");
+            }
+            imageBytes = imageStorageService.load(imageUrl.trim());
+        } else {
+            throw new IllegalArgumentException("请上传图片或提供图片 URL");
+        }
+        
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+        if (image == null) {
+            throw new IllegalArgumentException("无法读取图片，请确保图片格式正确");
+        }
+        
+        int size = tileSize != null ? Math.max(32, Math.min(256, tileSize)) : DEFAULT_PREVIEW_TILE_SIZE;
+        List<FilterType> filters = Arrays.asList(FilterType.values());
+        BufferedImage sheet = filterService.renderPreviewSheet(image, filters, size, PREVIEW_COLUMNS);
+        String sheetUrl = imageStorageService.savePng(sheet, "preview");
+        
+        log.info("已生成滤镜预览拼图: {} 个滤镜, 格子 {}px", filters.size(), size);
+        return new FilterPreviewSheet(sheetUrl, size, PREVIEW_COLUMNS, filters);
     }
     
     /**
@@ -116,37 +485,6 @@ public class MemeService {
         }
     }
     
-    /**
-     * 下载图片（支持 HTTP/HTTPS URL 和本地路径）
-     * 
-     * @param imageUrl 图片 URL
-     * @return 图片字节数组
-     * @throws IOException 下载失败
-     */
-    private byte[] downloadImage(String imageUrl) throws IOException {
-        // 如果是 HTTP/HTTPS URL，需要下载
-        if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
-            try {
-                java.net.URL url = new java.net.URL(imageUrl);
-                try (java.io.InputStream in = url.openStream()) {
-                    return in.readAllBytes();
-                }
-            } catch (Exception e) {
-                throw new IOException("下载图片失败: " + e.getMessage(), e);
-            }
-        }
-        
-        // 如果是本地路径，直接读取
-        if (imageUrl.startsWith("/output/")) {
-            String fileName = imageUrl.substring("/output/".length());
-            String projectRoot = System.getProperty("user.dir");
-            java.nio.file.Path filePath = java.nio.file.Paths.get(projectRoot, "output", fileName);
-            return java.nio.file.Files.readAllBytes(filePath);
-        }
-        
-        throw new IOException("不支持的图片 URL 格式: " + imageUrl);
-    }
-    
     /**
      * 生成表情包（旧方法，保留兼容性）
      * 
@@ -177,7 +515,7 @@ public class MemeService {
     /**
      * 验证图片文件
      */
-    private void validateImageFile(MultipartFile file) {
+    void validateImageFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("图片文件不能为空");
         }
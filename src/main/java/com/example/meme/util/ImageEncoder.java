@@ -0,0 +1,215 @@
+package com.example.meme.util;
+
+import com.example.meme.model.OutputFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * 图片编码器
+ * 自动模式下检查图片是否含有非不透明像素：完全不透明（如照片类表情包）编码为 JPEG，体积通常只有 PNG 的 1/10，
+ * 含透明像素时编码为 PNG。JPEG 质量、渐进式和 PNG 压缩级别可配置。
+ * PNG8 模式先用 {@link PaletteQuantizer} 量化到最多 256 色再编码为 8 位索引 PNG，适合纯色背景加文字的表情包。
+ * 不透明的 TYPE_INT_ARGB 图片（如缓冲池画布）编码为 JPEG 时直接以 RGB 方式共享同一个像素数组，不复制像素。
+ */
+@Component
+public class ImageEncoder {
+
+    private static final DirectColorModel RGB_MODEL = new DirectColorModel(24, 0x00FF0000, 0x0000FF00, 0x000000FF);
+
+    /**
+     * 默认输出格式（auto、jpeg、png）
+     */
+    @Value("${output.format:auto}")
+    private String defaultFormat = "auto";
+
+    /**
+     * JPEG 质量（0.0-1.0）
+     */
+    @Value("${output.jpeg.quality:0.9}")
+    private float jpegQuality = 0.9f;
+
+    /**
+     * 是否输出渐进式 JPEG（移动端加载时先显示模糊全图）
+     */
+    @Value("${output.jpeg.progressive:true}")
+    private boolean jpegProgressive = true;
+
+    /**
+     * PNG 的 deflate 压缩级别（0-9，越大越小越慢，默认 4 与 ImageIO 默认一致）
+     */
+    @Value("${output.png.compression-level:4}")
+    private int pngCompressionLevel = 4;
+
+    /**
+     * PNG8 调色板最多颜色数（2-256）
+     */
+    @Value("${output.png8.max-colors:256}")
+    private int png8MaxColors = PaletteQuantizer.MAX_COLORS;
+
+    /**
+     * PNG8 是否使用抖动（照片类图片过渡更平滑，纯色图片体积会变大）
+     */
+    @Value("${output.png8.dither:false}")
+    private boolean png8Dither = false;
+
+    /**
+     * 按指定格式编码图片
+     * 请求的格式为空或 AUTO 时使用配置的默认格式，默认格式也是 auto 时按图片是否不透明选择；
+     * 指定 JPEG 但图片含透明像素时，透明部分合成到白色背景上
+     *
+     * @param image 图片
+     * @param requested 请求的格式（可为空）
+     * @param out 输出流（不会被关闭）
+     * @return 实际使用的格式
+     */
+    public OutputFormat encode(BufferedImage image, OutputFormat requested, OutputStream out) throws IOException {
+        OutputFormat format = configuredFormat(requested);
+        if (format == OutputFormat.PNG) {
+            write(image, format, out);
+            return format;
+        }
+        if (format == OutputFormat.PNG8) {
+            write(PaletteQuantizer.quantize(image, png8MaxColors, png8Dither), format, out);
+            return format;
+        }
+        // 自动选择和转换为 RGB 都需要知道是否不透明，只扫描一次
+        boolean opaque = isOpaque(image);
+        if (format == OutputFormat.AUTO && !opaque) {
+            write(image, OutputFormat.PNG, out);
+            return OutputFormat.PNG;
+        }
+        write(toRgb(image, opaque), OutputFormat.JPEG, out);
+        return OutputFormat.JPEG;
+    }
+
+    /**
+     * 请求的格式为空或 AUTO 时使用配置的默认格式
+     */
+    private OutputFormat configuredFormat(OutputFormat requested) {
+        if (requested != null && requested != OutputFormat.AUTO) {
+            return requested;
+        }
+        return OutputFormat.fromCode(defaultFormat);
+    }
+
+    /**
+     * 判断图片是否完全不透明，遇到第一个非不透明像素即返回
+     */
+    public static boolean isOpaque(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return true;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (isPackedInt(image)) {
+            int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int stride = ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+            for (int y = 0; y < height; y++) {
+                int offset = y * stride;
+                for (int x = 0; x < width; x++) {
+                    if ((data[offset + x] >>> 24) != 0xFF) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        // 其他格式（如 PNG 解码得到的 4BYTE_ABGR）逐行读取 alpha 通道，调色板图片没有 alpha 通道，逐行读取颜色
+        Raster alpha = image.getAlphaRaster();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            if (alpha != null) {
+                alpha.getSamples(0, y, width, 1, 0, row);
+            } else {
+                image.getRGB(0, y, width, 1, row, 0, width);
+            }
+            for (int x = 0; x < width; x++) {
+                int a = alpha != null ? row[x] : row[x] >>> 24;
+                if (a != 0xFF) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 转换为 JPEG 编码器可接受的无 alpha 图片
+     */
+    private static BufferedImage toRgb(BufferedImage image, boolean opaque) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        if (opaque && isPackedInt(image)) {
+            // 共享像素数组，按 RGB 掩码解释，忽略 alpha 字节
+            WritableRaster raster = Raster.createPackedRaster(image.getRaster().getDataBuffer(),
+                    image.getWidth(), image.getHeight(),
+                    ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride(),
+                    RGB_MODEL.getMasks(), null);
+            return new BufferedImage(RGB_MODEL, raster, false, null);
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = rgb.createGraphics();
+        g2d.drawImage(image, 0, 0, Color.WHITE, null);
+        g2d.dispose();
+        return rgb;
+    }
+
+    /**
+     * 是否为无偏移的单数组 TYPE_INT_ARGB（行跨度可以大于宽度）
+     */
+    private static boolean isPackedInt(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        return image.getType() == BufferedImage.TYPE_INT_ARGB
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0;
+    }
+
+    private void write(BufferedImage image, OutputFormat format, OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format == OutputFormat.JPEG ? "jpeg" : "png");
+        if (!writers.hasNext()) {
+            throw new IOException("没有可用的 " + format.getCode() + " 编码器");
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (format == OutputFormat.JPEG) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0f, Math.min(1f, jpegQuality)));
+            param.setProgressiveMode(jpegProgressive ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        } else if (param.canWriteCompressed()) {
+            // JDK 的 PNG 编码器按 9 - round(9 × quality) 计算 deflate 级别
+            int level = Math.max(0, Math.min(9, pngCompressionLevel));
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality((9 - level) / 9f);
+        }
+        // 使用内存缓存的输出流，避免 ImageIO 默认在临时目录创建缓存文件
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
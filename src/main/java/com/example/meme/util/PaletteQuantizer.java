@@ -0,0 +1,340 @@
+package com.example.meme.util;
+
+import com.example.meme.filter.RasterImages;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+/**
+ * 调色板量化器（中位切分）
+ * 先把像素按 RGB 各 5 位、透明度 3 位归入颜色格统计直方图，再对出现过的颜色格做中位切分得到最多 256 个颜色盒，
+ * 颜色格 → 调色板下标的映射作为颜色索引缓存，映射像素时只需一次查表；调色板颜色取盒内像素的精确平均值。
+ * 可选 Floyd–Steinberg 抖动：误差扩散后落到未出现过的颜色格时，才按最近颜色查找并写回缓存。
+ * 完全透明的像素共用一个独立的颜色格（透明度等级 0），不会与透明度很低的深色像素合并，量化结果可编码为带 tRNS 的 8 位索引 PNG。
+ */
+public final class PaletteQuantizer {
+
+    /**
+     * 最大调色板颜色数
+     */
+    public static final int MAX_COLORS = 256;
+
+    /**
+     * 颜色格：R、G、B 各 5 位，透明度等级 3 位（0 只表示完全透明）
+     */
+    private static final int KEY_BITS = 18;
+
+    /**
+     * 比较切分方向时透明度 3 位的放大倍数，使其与 5 位颜色通道处于同一量级
+     */
+    private static final int ALPHA_SCALE = 4;
+
+    private PaletteQuantizer() {
+    }
+
+    /**
+     * 量化为 8 位索引图片
+     *
+     * @param image 任意类型的图片
+     * @param maxColors 最多颜色数（2-256）
+     * @param dither 是否使用 Floyd–Steinberg 抖动
+     * @return TYPE_BYTE_INDEXED 图片
+     */
+    public static BufferedImage quantize(BufferedImage image, int maxColors, boolean dither) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = width * height;
+        int[] pixels = RasterImages.argbPixels(image);
+        int colors = Math.max(2, Math.min(MAX_COLORS, maxColors));
+
+        // 1. 统计颜色格直方图，收集出现过的颜色格
+        int[] histogram = new int[1 << KEY_BITS];
+        int occupied = 0;
+        for (int i = 0; i < size; i++) {
+            if (histogram[key(pixels[i])]++ == 0) {
+                occupied++;
+            }
+        }
+        int[] keys = new int[occupied];
+        int n = 0;
+        for (int key = 0; key < histogram.length && n < occupied; key++) {
+            if (histogram[key] != 0) {
+                keys[n++] = key;
+            }
+        }
+
+        // 2. 中位切分，颜色盒为 keys 上的连续区间
+        int[] boxStart = new int[colors];
+        int[] boxEnd = new int[colors];
+        int boxes = cut(keys, histogram, boxStart, boxEnd, colors);
+
+        // 3. 颜色索引缓存：颜色格 → 调色板下标 + 1（0 表示尚未确定），直接复用直方图数组
+        for (int box = 0; box < boxes; box++) {
+            for (int k = boxStart[box]; k < boxEnd[box]; k++) {
+                histogram[keys[k]] = box + 1;
+            }
+        }
+        int[] cache = histogram;
+
+        // 4. 映射像素并累加每个颜色盒的精确平均色
+        byte[] out = new byte[size];
+        long[] sums = new long[boxes * 4];
+        int[] counts = new int[boxes];
+        for (int i = 0; i < size; i++) {
+            int p = pixels[i];
+            int index = cache[key(p)] - 1;
+            out[i] = (byte) index;
+            int o = index * 4;
+            sums[o] += (p >>> 24);
+            sums[o + 1] += (p >> 16) & 0xFF;
+            sums[o + 2] += (p >> 8) & 0xFF;
+            sums[o + 3] += p & 0xFF;
+            counts[index]++;
+        }
+        int[] palette = new int[boxes];
+        boolean translucent = false;
+        for (int box = 0; box < boxes; box++) {
+            int count = Math.max(1, counts[box]);
+            int a = (int) ((sums[box * 4] + count / 2) / count);
+            int r = (int) ((sums[box * 4 + 1] + count / 2) / count);
+            int g = (int) ((sums[box * 4 + 2] + count / 2) / count);
+            int b = (int) ((sums[box * 4 + 3] + count / 2) / count);
+            palette[box] = (a << 24) | (r << 16) | (g << 8) | b;
+            translucent |= a != 0xFF;
+        }
+
+        // 5. 可选抖动：按已确定的调色板重新映射并扩散误差
+        if (dither) {
+            ditherInto(pixels, width, height, palette, cache, out);
+        }
+
+        byte[] reds = new byte[boxes];
+        byte[] greens = new byte[boxes];
+        byte[] blues = new byte[boxes];
+        byte[] alphas = new byte[boxes];
+        for (int box = 0; box < boxes; box++) {
+            alphas[box] = (byte) (palette[box] >>> 24);
+            reds[box] = (byte) (palette[box] >> 16);
+            greens[box] = (byte) (palette[box] >> 8);
+            blues[box] = (byte) palette[box];
+        }
+        IndexColorModel colorModel = translucent
+                ? new IndexColorModel(8, boxes, reds, greens, blues, alphas)
+                : new IndexColorModel(8, boxes, reds, greens, blues);
+        BufferedImage indexed = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        byte[] target = ((DataBufferByte) indexed.getRaster().getDataBuffer()).getData();
+        System.arraycopy(out, 0, target, 0, size);
+        return indexed;
+    }
+
+    /**
+     * 中位切分：每次选择（像素数 × 最长边）最大的颜色盒，沿最长边按像素数的中位数一分为二
+     *
+     * @return 颜色盒数量
+     */
+    private static int cut(int[] keys, int[] histogram, int[] boxStart, int[] boxEnd, int colors) {
+        long[] scores = new long[colors];
+        int[] channels = new int[colors];
+        int[] sorted = new int[keys.length];
+        boxStart[0] = 0;
+        boxEnd[0] = keys.length;
+        measure(keys, histogram, 0, boxStart, boxEnd, scores, channels);
+        int boxes = 1;
+        while (boxes < colors) {
+            int best = -1;
+            for (int box = 0; box < boxes; box++) {
+                if (scores[box] > 0 && (best < 0 || scores[box] > scores[best])) {
+                    best = box;
+                }
+            }
+            if (best < 0) {
+                // 所有颜色盒都只剩一种颜色
+                break;
+            }
+            int start = boxStart[best];
+            int end = boxEnd[best];
+            sortByChannel(keys, sorted, start, end, channels[best]);
+            int split = weightedMedian(keys, histogram, start, end);
+            boxEnd[best] = split;
+            boxStart[boxes] = split;
+            boxEnd[boxes] = end;
+            measure(keys, histogram, best, boxStart, boxEnd, scores, channels);
+            measure(keys, histogram, boxes, boxStart, boxEnd, scores, channels);
+            boxes++;
+        }
+        return boxes;
+    }
+
+    /**
+     * 计算颜色盒的切分优先级（像素数 × 最长边）和最长边所在通道，只有一种颜色格的盒优先级为 0
+     */
+    private static void measure(int[] keys, int[] histogram, int box, int[] boxStart, int[] boxEnd,
+                                long[] scores, int[] channels) {
+        int start = boxStart[box];
+        int end = boxEnd[box];
+        scores[box] = 0;
+        if (end - start < 2) {
+            return;
+        }
+        long count = 0;
+        int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        int[] max = {-1, -1, -1, -1};
+        for (int k = start; k < end; k++) {
+            int key = keys[k];
+            count += histogram[key];
+            for (int c = 0; c < 4; c++) {
+                int v = channel(key, c);
+                min[c] = Math.min(min[c], v);
+                max[c] = Math.max(max[c], v);
+            }
+        }
+        for (int c = 0; c < 4; c++) {
+            long score = count * (max[c] - min[c]) * (c == 3 ? ALPHA_SCALE : 1);
+            if (score > scores[box]) {
+                scores[box] = score;
+                channels[box] = c;
+            }
+        }
+    }
+
+    /**
+     * 按通道值计数排序（通道最多 5 位）
+     */
+    private static void sortByChannel(int[] keys, int[] sorted, int start, int end, int channel) {
+        int[] offsets = new int[33];
+        for (int k = start; k < end; k++) {
+            offsets[channel(keys[k], channel) + 1]++;
+        }
+        for (int v = 1; v < offsets.length; v++) {
+            offsets[v] += offsets[v - 1];
+        }
+        for (int k = start; k < end; k++) {
+            sorted[start + offsets[channel(keys[k], channel)]++] = keys[k];
+        }
+        System.arraycopy(sorted, start, keys, start, end - start);
+    }
+
+    /**
+     * 按像素数找中位切分点，保证两侧都不为空
+     */
+    private static int weightedMedian(int[] keys, int[] histogram, int start, int end) {
+        long total = 0;
+        for (int k = start; k < end; k++) {
+            total += histogram[keys[k]];
+        }
+        long half = total / 2;
+        long running = 0;
+        for (int k = start; k < end - 1; k++) {
+            running += histogram[keys[k]];
+            if (running >= half) {
+                return k + 1;
+            }
+        }
+        return end - 1;
+    }
+
+    /**
+     * Floyd–Steinberg 抖动：只扩散 RGB 误差，透明度保持原值
+     */
+    private static void ditherInto(int[] pixels, int width, int height, int[] palette, int[] cache, byte[] out) {
+        // 误差缓冲区两端各留一格，省去边界判断
+        int[] current = new int[(width + 2) * 3];
+        int[] next = new int[(width + 2) * 3];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = pixels[offset + x];
+                int a = p >>> 24;
+                int e = (x + 1) * 3;
+                if (a == 0) {
+                    // 完全透明的像素不参与误差扩散
+                    out[offset + x] = (byte) (cache[0] - 1);
+                    continue;
+                }
+                int r = clamp(((p >> 16) & 0xFF) + (current[e] >> 4));
+                int g = clamp(((p >> 8) & 0xFF) + (current[e + 1] >> 4));
+                int b = clamp((p & 0xFF) + (current[e + 2] >> 4));
+                int adjusted = (a << 24) | (r << 16) | (g << 8) | b;
+                int key = key(adjusted);
+                int index = cache[key] - 1;
+                if (index < 0) {
+                    index = nearest(palette, a, r, g, b);
+                    cache[key] = index + 1;
+                }
+                out[offset + x] = (byte) index;
+
+                int q = palette[index];
+                spread(current, next, e, r - ((q >> 16) & 0xFF));
+                spread(current, next, e + 1, g - ((q >> 8) & 0xFF));
+                spread(current, next, e + 2, b - (q & 0xFF));
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+    }
+
+    /**
+     * 按 7/16、3/16、5/16、1/16 把误差扩散到右侧和下一行（误差以 16 倍存储）
+     */
+    private static void spread(int[] current, int[] next, int e, int error) {
+        current[e + 3] += error * 7;
+        next[e - 3] += error * 3;
+        next[e] += error * 5;
+        next[e + 3] += error;
+    }
+
+    private static int nearest(int[] palette, int a, int r, int g, int b) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.length; i++) {
+            int q = palette[i];
+            int da = a - (q >>> 24);
+            int dr = r - ((q >> 16) & 0xFF);
+            int dg = g - ((q >> 8) & 0xFF);
+            int db = b - (q & 0xFF);
+            int distance = da * da + dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 颜色格编号：完全透明的像素统一为 0；其他像素的透明度等级为 a / 32，最小为 1（透明度 1-63 同为等级 1），
+     * 因此透明度很低的深色像素不会落入完全透明的颜色格
+     */
+    private static int key(int argb) {
+        int a = argb >>> 24;
+        if (a == 0) {
+            return 0;
+        }
+        return ((argb >> 19) & 0x1F) << 13 | ((argb >> 11) & 0x1F) << 8 | ((argb >> 3) & 0x1F) << 3
+                | Math.max(1, a >> 5);
+    }
+
+    /**
+     * 颜色格的通道值：0-2 为 R、G、B（5 位），3 为透明度（3 位）
+     */
+    private static int channel(int key, int channel) {
+        switch (channel) {
+            case 0:
+                return (key >> 13) & 0x1F;
+            case 1:
+                return (key >> 8) & 0x1F;
+            case 2:
+                return (key >> 3) & 0x1F;
+            default:
+                return key & 0x7;
+        }
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+}
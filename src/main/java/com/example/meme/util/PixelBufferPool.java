@@ -0,0 +1,208 @@
+package com.example.meme.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 像素缓冲池
+ * 复用 TYPE_INT_ARGB 图片底层的 int[]，避免每个请求都分配数 MB 的新数组。
+ * 数组按容量分桶（向上取整到 2 的幂的 1/4 步长，浪费不超过 25%），不同尺寸的图片可以共用同一个桶；
+ * 池内总字节数有上限，超出时优先淘汰其他桶中最早归还的数组。
+ * 只回收本池借出且尚未归还的数组：非本池创建的图片和重复归还都会被忽略，避免同一个数组同时借给两个调用方。
+ */
+@Component
+public class PixelBufferPool {
+
+    private static final DirectColorModel ARGB_MODEL = new DirectColorModel(32,
+            0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000);
+
+    /**
+     * 是否启用缓冲池（关闭时每次都分配新数组）
+     */
+    @Value("${buffer-pool.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * 池内最多保留的字节数
+     */
+    @Value("${buffer-pool.max-bytes:134217728}")
+    private long maxBytes = 128L * 1024 * 1024;
+
+    /**
+     * 容量桶 → 空闲数组（队首为最近归还）
+     */
+    private final Map<Integer, ArrayDeque<int[]>> buckets = new HashMap<>();
+
+    private long pooledBytes;
+
+    /**
+     * 已借出、尚未归还的图片的 DataBuffer（每次借出都新建，同一数组再次借出后旧图片的重复归还也能识别）
+     * DataBuffer 的 equals/hashCode 基于对象身份，WeakHashMap 即按身份比较；弱引用使借出后未归还的图片仍可被回收
+     */
+    private final Set<DataBuffer> borrowed = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong ignoredReleases = new AtomicLong();
+
+    /**
+     * 借出一张 TYPE_INT_ARGB 图片
+     *
+     * @param width 宽度
+     * @param height 高度
+     * @param clear 是否清空为全透明（复用的数组内容是上一次使用留下的）
+     * @return 图片，底层数组可能比 width*height 更长
+     */
+    public BufferedImage borrow(int width, int height, boolean clear) {
+        int size = Math.multiplyExact(width, height);
+        int capacity = bucketCapacity(size);
+        if (!enabled) {
+            misses.incrementAndGet();
+            return wrap(new int[capacity], width, height);
+        }
+        int[] data = null;
+        synchronized (this) {
+            ArrayDeque<int[]> bucket = buckets.get(capacity);
+            if (bucket != null && !bucket.isEmpty()) {
+                data = bucket.pollFirst();
+                pooledBytes -= bytesOf(data);
+            }
+        }
+        if (data != null) {
+            hits.incrementAndGet();
+            if (clear) {
+                Arrays.fill(data, 0, size, 0);
+            }
+        } else {
+            misses.incrementAndGet();
+            data = new int[capacity];
+        }
+        BufferedImage image = wrap(data, width, height);
+        synchronized (this) {
+            borrowed.add(image.getRaster().getDataBuffer());
+        }
+        return image;
+    }
+
+    /**
+     * 归还图片，归还后调用方不能再使用该图片
+     * 非本池借出的图片和重复归还会被忽略（计入 ignoredReleases）
+     */
+    public void release(BufferedImage image) {
+        if (!enabled || image == null || image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return;
+        }
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        if (!(buffer instanceof DataBufferInt) || buffer.getNumBanks() != 1) {
+            return;
+        }
+        int[] data = ((DataBufferInt) buffer).getData();
+        int capacity = data.length;
+        synchronized (this) {
+            if (!borrowed.remove(buffer)) {
+                ignoredReleases.incrementAndGet();
+                return;
+            }
+            releases.incrementAndGet();
+            if (bytesOf(data) > maxBytes) {
+                return;
+            }
+            makeRoom(bytesOf(data), capacity);
+            buckets.computeIfAbsent(capacity, k -> new ArrayDeque<>()).addFirst(data);
+            pooledBytes += bytesOf(data);
+        }
+    }
+
+    /**
+     * 缓冲池统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("releases", releases.get());
+        stats.put("evictions", evictions.get());
+        stats.put("ignoredReleases", ignoredReleases.get());
+        synchronized (this) {
+            stats.put("pooledBytes", pooledBytes);
+            stats.put("pooledBuffers", buckets.values().stream().mapToInt(ArrayDeque::size).sum());
+        }
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    /**
+     * 腾出空间：先淘汰其他桶中最早归还的数组，仍不够再淘汰本桶
+     */
+    private void makeRoom(long incoming, int ownCapacity) {
+        Iterator<Map.Entry<Integer, ArrayDeque<int[]>>> iterator = buckets.entrySet().iterator();
+        while (pooledBytes + incoming > maxBytes && iterator.hasNext()) {
+            Map.Entry<Integer, ArrayDeque<int[]>> entry = iterator.next();
+            if (entry.getKey() == ownCapacity) {
+                continue;
+            }
+            evictFrom(entry.getValue(), incoming);
+            if (entry.getValue().isEmpty()) {
+                iterator.remove();
+            }
+        }
+        ArrayDeque<int[]> own = buckets.get(ownCapacity);
+        if (own != null) {
+            evictFrom(own, incoming);
+        }
+    }
+
+    private void evictFrom(ArrayDeque<int[]> bucket, long incoming) {
+        while (pooledBytes + incoming > maxBytes && !bucket.isEmpty()) {
+            pooledBytes -= bytesOf(bucket.pollLast());
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 计算容量桶：向上取整到最高位的 1/4 步长
+     */
+    static int bucketCapacity(int size) {
+        if (size <= 1024) {
+            return 1024;
+        }
+        int highest = Integer.highestOneBit(size);
+        int step = highest >> 2;
+        long rounded = ((long) size + step - 1) / step * step;
+        return (int) Math.min(Integer.MAX_VALUE - 8, rounded);
+    }
+
+    private static long bytesOf(int[] data) {
+        return (long) data.length * Integer.BYTES;
+    }
+
+    /**
+     * 用已有数组构造紧凑的 TYPE_INT_ARGB 图片（行跨度等于宽度）
+     */
+    private static BufferedImage wrap(int[] data, int width, int height) {
+        DataBufferInt buffer = new DataBufferInt(data, width * height);
+        WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width,
+                ARGB_MODEL.getMasks(), null);
+        return new BufferedImage(ARGB_MODEL, raster, false, null);
+    }
+}
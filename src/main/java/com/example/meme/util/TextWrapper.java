@@ -0,0 +1,216 @@
+package com.example.meme.util;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 文字换行工具
+ * 按 BreakIterator 的断行规则贪心换行：中文逐字可断（行首不出现闭合标点），英文只在单词边界断开，
+ * 单个单词超过行宽时再按字符强制断开；文本中的换行符强制换行。
+ * 字符宽度按（字体, 渲染上下文）缓存，逐字符累加宽度，整个过程与文本长度成线性关系，只在输出每一行时创建字符串。
+ */
+public final class TextWrapper {
+
+    /**
+     * 最多缓存的字体数量
+     */
+    private static final int MAX_CACHED_FONTS = 64;
+
+    private static final Map<AdvanceKey, AdvanceTable> ADVANCE_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<AdvanceKey, AdvanceTable> eldest) {
+            return size() > MAX_CACHED_FONTS;
+        }
+    };
+
+    /**
+     * BreakIterator 不是线程安全的，每个线程复用一个实例
+     */
+    private static final ThreadLocal<BreakIterator> LINE_BREAKS =
+            ThreadLocal.withInitial(() -> BreakIterator.getLineInstance(Locale.SIMPLIFIED_CHINESE));
+
+    private TextWrapper() {
+    }
+
+    /**
+     * 按最大宽度换行
+     *
+     * @param text 原始文字
+     * @param fm 字体度量
+     * @param maxWidth 最大行宽（像素）
+     * @return 换行后的文字列表（行尾空白已去除），至少包含一行
+     */
+    public static List<String> wrap(String text, FontMetrics fm, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        AdvanceTable advances = advancesFor(fm);
+        BreakIterator breaks = LINE_BREAKS.get();
+        breaks.setText(text);
+
+        int lineStart = 0;
+        int lineWidth = 0;
+        int start = breaks.first();
+        for (int end = breaks.next(); end != BreakIterator.DONE; start = end, end = breaks.next()) {
+            boolean hardBreak = text.charAt(end - 1) == '\n';
+            int contentEnd = trimTrailing(text, start, end);
+            int contentWidth = advances.width(text, start, contentEnd);
+
+            if (lineWidth + contentWidth > maxWidth && start > lineStart) {
+                // 当前片段放不下，先输出已有的行
+                lines.add(text.substring(lineStart, trimTrailing(text, lineStart, start)));
+                lineStart = start;
+                lineWidth = 0;
+            }
+            if (contentWidth > maxWidth && start == lineStart) {
+                // 单个片段（如很长的英文单词）超过行宽，按字符强制断开
+                lineStart = breakLongSegment(text, start, contentEnd, advances, maxWidth, lines);
+                lineWidth = advances.width(text, lineStart, contentEnd);
+            } else {
+                lineWidth += contentWidth;
+            }
+            // 片段末尾的空白计入宽度，行尾的空白在输出时去掉
+            lineWidth += advances.width(text, contentEnd, end);
+
+            if (hardBreak) {
+                lines.add(text.substring(lineStart, trimTrailing(text, lineStart, end)));
+                lineStart = end;
+                lineWidth = 0;
+            }
+        }
+        if (lineStart < text.length() || lines.isEmpty()) {
+            lines.add(text.substring(lineStart, trimTrailing(text, lineStart, text.length())));
+        }
+        return lines;
+    }
+
+    /**
+     * 逐字符断开超长片段，输出除最后一段以外的各行
+     *
+     * @return 最后一段（尚未输出）的起始位置
+     */
+    private static int breakLongSegment(String text, int start, int end, AdvanceTable advances,
+                                        int maxWidth, List<String> lines) {
+        int lineStart = start;
+        int width = 0;
+        for (int i = start; i < end; ) {
+            int codePoint = text.codePointAt(i);
+            int advance = advances.advance(codePoint);
+            if (width + advance > maxWidth && i > lineStart) {
+                lines.add(text.substring(lineStart, i));
+                lineStart = i;
+                width = 0;
+            }
+            width += advance;
+            i += Character.charCount(codePoint);
+        }
+        return lineStart;
+    }
+
+    private static int trimTrailing(String text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static AdvanceTable advancesFor(FontMetrics fm) {
+        AdvanceKey key = new AdvanceKey(fm.getFont(), fm.getFontRenderContext());
+        synchronized (ADVANCE_CACHE) {
+            AdvanceTable table = ADVANCE_CACHE.get(key);
+            if (table == null) {
+                table = new AdvanceTable(fm);
+                ADVANCE_CACHE.put(key, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * 单个字体的字符宽度表
+     * 按 256 个码点分页懒加载；存储值为宽度 + 1，0 表示尚未计算。
+     * 已计算的宽度不加锁读取（int 读写是原子的，读到 0 只会进入加锁的慢路径）；
+     * 分页的创建和宽度计算在锁内进行，FontMetrics 不会被并发调用，写入的页也不会被另一个线程覆盖
+     */
+    private static final class AdvanceTable {
+
+        private static final int PAGE_BITS = 8;
+
+        private final FontMetrics metrics;
+        private final int[][] pages = new int[(Character.MAX_CODE_POINT + 1) >> PAGE_BITS][];
+
+        AdvanceTable(FontMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        int advance(int codePoint) {
+            int[] page = pages[codePoint >> PAGE_BITS];
+            int index = codePoint & ((1 << PAGE_BITS) - 1);
+            int stored = page == null ? 0 : page[index];
+            if (stored == 0) {
+                stored = compute(codePoint, index);
+            }
+            return stored - 1;
+        }
+
+        private synchronized int compute(int codePoint, int index) {
+            int[] page = pages[codePoint >> PAGE_BITS];
+            if (page == null) {
+                page = new int[1 << PAGE_BITS];
+                pages[codePoint >> PAGE_BITS] = page;
+            }
+            int stored = page[index];
+            if (stored == 0) {
+                stored = metrics.charWidth(codePoint) + 1;
+                page[index] = stored;
+            }
+            return stored;
+        }
+
+        int width(String text, int start, int end) {
+            int width = 0;
+            for (int i = start; i < end; ) {
+                int codePoint = text.codePointAt(i);
+                if (codePoint != '\n' && codePoint != '\r') {
+                    width += advance(codePoint);
+                }
+                i += Character.charCount(codePoint);
+            }
+            return width;
+        }
+    }
+
+    private static final class AdvanceKey {
+
+        private final Font font;
+        private final FontRenderContext context;
+
+        AdvanceKey(Font font, FontRenderContext context) {
+            this.font = font;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AdvanceKey)) {
+                return false;
+            }
+            AdvanceKey other = (AdvanceKey) o;
+            return font.equals(other.font) && context.equals(other.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, context);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.meme.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 饱和度内核与原 HSB 实现的容差测试
+ */
+class SaturateKernelTest {
+
+    /**
+     * 允许的最大单通道偏差（见 {@link SaturateKernel} 的容差说明）
+     */
+    private static final int MAX_DEVIATION = 1;
+
+    private static final double[] STRENGTHS = {0.0, 0.5, 1.0, SaturateKernel.DEFAULT_STRENGTH, 2.0,
+            SaturateKernel.MAX_STRENGTH};
+
+    @Test
+    void matchesHsbWithinTolerance() {
+        Random random = new Random(42);
+        int[] src = new int[1_000_000];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = random.nextInt();
+        }
+        for (double strength : STRENGTHS) {
+            int[] actual = new int[src.length];
+            new SaturateKernel(strength).apply(src, actual, src.length, 1, 0, 1);
+            int maxDeviation = 0;
+            for (int i = 0; i < src.length; i++) {
+                int expected = hsb(src[i], strength);
+                assertEquals(src[i] & 0xFF000000, actual[i] & 0xFF000000, "透明度必须保持不变");
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int deviation = Math.abs(((expected >> shift) & 0xFF) - ((actual[i] >> shift) & 0xFF));
+                    maxDeviation = Math.max(maxDeviation, deviation);
+                }
+            }
+            assertTrue(maxDeviation <= MAX_DEVIATION, "强度 " + strength + " 的最大偏差为 " + maxDeviation);
+        }
+    }
+
+    @Test
+    void keepsGraysAndIdentity() {
+        int[] src = new int[256 * 2];
+        for (int v = 0; v < 256; v++) {
+            src[v] = 0x80000000 | (v << 16) | (v << 8) | v;
+            src[256 + v] = 0xFF000000 | (v << 16) | ((255 - v) << 8) | (v / 2);
+        }
+        int[] grays = new int[256];
+        new SaturateKernel(SaturateKernel.MAX_STRENGTH).apply(src, grays, 256, 1, 0, 1);
+        for (int v = 0; v < 256; v++) {
+            assertEquals(src[v], grays[v]);
+        }
+        int[] identity = new int[src.length];
+        new SaturateKernel(1.0).apply(src, identity, src.length, 1, 0, 1);
+        for (int i = 0; i < src.length; i++) {
+            assertEquals(src[i], identity[i]);
+        }
+    }
+
+    /**
+     * 原 HSB 实现
+     */
+    private static int hsb(int p, double strength) {
+        float[] hsb = Color.RGBtoHSB((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF, null);
+        float s = Math.min(1.0f, (float) (hsb[1] * strength));
+        return (p & 0xFF000000) | (Color.HSBtoRGB(hsb[0], s, hsb[2]) & 0x00FFFFFF);
+    }
+}
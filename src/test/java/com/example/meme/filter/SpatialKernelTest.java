@@ -0,0 +1,282 @@
+package com.example.meme.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 模糊、锐化、暗角内核测试：与逐像素直接计算的参考实现逐位比较，并检查按行条带分段执行与整图一次执行结果一致
+ */
+class SpatialKernelTest {
+
+    private static final int[][] SIZES = {{1, 1}, {7, 3}, {37, 23}, {64, 64}, {101, 9}, {5, 120}};
+
+    private static final double[] BLUR_RATIOS = {0.01, 0.05, 0.12, 0.3};
+
+    private static final double[] SHARPEN_AMOUNTS = {0.0, 0.5, 1.0, 2.5};
+
+    private static final double[] VIGNETTE_AMOUNTS = {0.0, 0.3, 0.6, 1.0};
+
+    @Test
+    void blurMatchesNaiveReference() {
+        Random random = new Random(1);
+        for (int[] size : SIZES) {
+            int[] src = randomPixels(random, size[0] * size[1]);
+            for (double ratio : BLUR_RATIOS) {
+                BoxBlurKernel kernel = new BoxBlurKernel(ratio);
+                int radius = kernel.radiusFor(size[0], size[1]);
+                assertArrayEquals(naiveBlur(src, size[0], size[1], radius), applyWhole(kernel, src, size),
+                        "blur " + size[0] + "x" + size[1] + " radius=" + radius);
+            }
+        }
+    }
+
+    @Test
+    void blurDoesNotDarkenTransparentEdges() {
+        int width = 40;
+        int height = 40;
+        int[] src = new int[width * height];
+        for (int y = 10; y < 30; y++) {
+            for (int x = 10; x < 30; x++) {
+                src[y * width + x] = 0xFFFF8000;
+            }
+        }
+        int[] dst = applyWhole(new BoxBlurKernel(0.1), src, new int[]{width, height});
+
+        int fringe = 0;
+        for (int p : dst) {
+            if ((p >>> 24) == 0) {
+                assertEquals(0, p);
+                continue;
+            }
+            // 边缘半透明像素保持原来的颜色，只有透明度变化
+            assertEquals(0xFF8000, p & 0xFFFFFF, Integer.toHexString(p));
+            if ((p >>> 24) < 0xFF) {
+                fringe++;
+            }
+        }
+        assertTrue(fringe > 0);
+    }
+
+    @Test
+    void blurOfOpaqueImageIsUnchangedByPremultiply() {
+        Random random = new Random(2);
+        int[] size = {37, 23};
+        int[] src = randomPixels(random, size[0] * size[1]);
+        for (int i = 0; i < src.length; i++) {
+            src[i] |= 0xFF000000;
+        }
+        BoxBlurKernel kernel = new BoxBlurKernel(0.12);
+        int radius = kernel.radiusFor(size[0], size[1]);
+        int[] dst = applyWhole(kernel, src, size);
+        // 不透明图片的结果等于直接对各通道求平均
+        int[] expected = new int[src.length];
+        for (int y = 0; y < size[1]; y++) {
+            for (int x = 0; x < size[0]; x++) {
+                int[] sums = new int[4];
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int p = src[clamp(y + dy, size[1]) * size[0] + clamp(x + dx, size[0])];
+                        for (int c = 0; c < 4; c++) {
+                            sums[c] += (p >>> (24 - 8 * c)) & 0xFF;
+                        }
+                    }
+                }
+                int area = (2 * radius + 1) * (2 * radius + 1);
+                int value = 0;
+                for (int c = 0; c < 4; c++) {
+                    value |= ((sums[c] + area / 2) / area) << (24 - 8 * c);
+                }
+                expected[y * size[0] + x] = value;
+            }
+        }
+        assertArrayEquals(expected, dst);
+    }
+
+    @Test
+    void sharpenMatchesNaiveReference() {
+        Random random = new Random(3);
+        for (int[] size : SIZES) {
+            int[] src = randomPixels(random, size[0] * size[1]);
+            for (double amount : SHARPEN_AMOUNTS) {
+                assertArrayEquals(naiveSharpen(src, size[0], size[1], amount),
+                        applyWhole(new UnsharpMaskKernel(amount), src, size),
+                        "sharpen " + size[0] + "x" + size[1] + " amount=" + amount);
+            }
+        }
+    }
+
+    @Test
+    void vignetteMatchesNaiveReference() {
+        Random random = new Random(4);
+        for (int[] size : SIZES) {
+            int[] src = randomPixels(random, size[0] * size[1]);
+            for (double amount : VIGNETTE_AMOUNTS) {
+                assertArrayEquals(naiveVignette(src, size[0], size[1], amount),
+                        applyWhole(new VignetteKernel(amount), src, size),
+                        "vignette " + size[0] + "x" + size[1] + " amount=" + amount);
+            }
+        }
+    }
+
+    /**
+     * 条带边界处（每个条带单独初始化列和、单独按边缘延伸）的结果必须与整图一次执行一致
+     */
+    @Test
+    void stripedApplicationMatchesSinglePass() {
+        Random random = new Random(5);
+        List<PixelKernel> kernels = List.of(new BoxBlurKernel(0.01), new BoxBlurKernel(0.12), new BoxBlurKernel(0.3),
+                new UnsharpMaskKernel(1.0), new UnsharpMaskKernel(2.5), new VignetteKernel(0.6));
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            int[] src = randomPixels(random, width * height);
+            for (PixelKernel kernel : kernels) {
+                int[] whole = applyWhole(kernel, src, size);
+                for (int stripes : new int[]{2, 3, 7, height}) {
+                    int[] striped = new int[src.length];
+                    for (int s = 0; s < stripes; s++) {
+                        int rowStart = height * s / stripes;
+                        int rowEnd = height * (s + 1) / stripes;
+                        kernel.apply(src, striped, width, height, rowStart, rowEnd);
+                    }
+                    assertArrayEquals(whole, striped, kernel.getClass().getSimpleName() + " "
+                            + width + "x" + height + " stripes=" + stripes);
+                }
+                // 不均匀的随机切分，包含单行条带
+                int[] striped = new int[src.length];
+                int rowStart = 0;
+                while (rowStart < height) {
+                    int rowEnd = Math.min(height, rowStart + 1 + random.nextInt(Math.max(1, height / 3)));
+                    kernel.apply(src, striped, width, height, rowStart, rowEnd);
+                    rowStart = rowEnd;
+                }
+                assertArrayEquals(whole, striped, kernel.getClass().getSimpleName() + " "
+                        + width + "x" + height + " random stripes");
+            }
+        }
+    }
+
+    private static int[] applyWhole(PixelKernel kernel, int[] src, int[] size) {
+        int[] dst = new int[src.length];
+        kernel.apply(src, dst, size[0], size[1], 0, size[1]);
+        return dst;
+    }
+
+    /**
+     * 逐像素按透明度加权平均颜色（Σ(C × A) / ΣA），透明度取窗口平均；半径为 0 时原样输出
+     */
+    private static int[] naiveBlur(int[] src, int width, int height, int radius) {
+        if (radius == 0) {
+            return src.clone();
+        }
+        int[] dst = new int[src.length];
+        int area = (2 * radius + 1) * (2 * radius + 1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long a = 0;
+                long[] weighted = new long[3];
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int p = src[clamp(y + dy, height) * width + clamp(x + dx, width)];
+                        int alpha = p >>> 24;
+                        a += alpha;
+                        for (int c = 0; c < 3; c++) {
+                            weighted[c] += (long) alpha * ((p >> (16 - 8 * c)) & 0xFF);
+                        }
+                    }
+                }
+                int avgA = (int) ((a + area / 2) / area);
+                if (avgA == 0) {
+                    continue;
+                }
+                int value = avgA << 24;
+                for (int c = 0; c < 3; c++) {
+                    value |= (int) ((weighted[c] + a / 2) / a) << (16 - 8 * c);
+                }
+                dst[y * width + x] = value;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * 直接用 5×5 二项式核 [1 4 6 4 1] ⊗ [1 4 6 4 1] / 256 模糊后做反锐化掩模，透明度不变
+     */
+    private static int[] naiveSharpen(int[] src, int width, int height, double amount) {
+        int[] weights = {1, 4, 6, 4, 1};
+        int amountQ8 = (int) Math.round(amount * 256);
+        int[] dst = new int[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int p = src[y * width + x];
+                int value = p & 0xFF000000;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int sum = 0;
+                    for (int ky = 0; ky < 5; ky++) {
+                        for (int kx = 0; kx < 5; kx++) {
+                            int q = src[clamp(y + ky - 2, height) * width + clamp(x + kx - 2, width)];
+                            sum += weights[ky] * weights[kx] * ((q >> shift) & 0xFF);
+                        }
+                    }
+                    int blur = (sum + 128) >> 8;
+                    int c = (p >> shift) & 0xFF;
+                    int v = c + (((c - blur) * amountQ8 + 128) >> 8);
+                    value |= Math.max(0, Math.min(255, v)) << shift;
+                }
+                dst[y * width + x] = value;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * 逐像素按到中心的归一化距离计算 smoothstep(0.35, 1, d) 衰减，透明度不变
+     */
+    private static int[] naiveVignette(int[] src, int width, int height, double amount) {
+        int amountQ8 = (int) Math.round(Math.max(0.0, Math.min(1.0, amount)) * 256);
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+        double maxDistance = Math.sqrt(centerX * centerX + centerY * centerY);
+        int[] dst = new int[src.length];
+        for (int y = 0; y < height; y++) {
+            double dy = Math.abs(y + 0.5 - centerY);
+            for (int x = 0; x < width; x++) {
+                double dx = Math.abs(x + 0.5 - centerX);
+                double d = Math.sqrt(dx * dx + dy * dy) / maxDistance;
+                double t = Math.max(0.0, Math.min(1.0, (d - 0.35) / (1.0 - 0.35)));
+                int m = (int) Math.round(t * t * (3 - 2 * t) * 65535);
+                int factor = 65536 - ((m * amountQ8) >> 8);
+                int p = src[y * width + x];
+                int value = p & 0xFF000000;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    value |= ((((p >> shift) & 0xFF) * factor) >>> 16) << shift;
+                }
+                dst[y * width + x] = value;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * 随机像素：透明度覆盖完全透明、半透明和不透明
+     */
+    private static int[] randomPixels(Random random, int length) {
+        int[] pixels = new int[length];
+        int[] alphas = {0, 1, 64, 128, 200, 255, 255, 255};
+        for (int i = 0; i < length; i++) {
+            int alpha = random.nextInt(4) == 0 ? random.nextInt(256) : alphas[random.nextInt(alphas.length)];
+            pixels[i] = (alpha << 24) | (random.nextInt() & 0xFFFFFF);
+        }
+        return pixels;
+    }
+
+    private static int clamp(int value, int size) {
+        return value < 0 ? 0 : (value >= size ? size - 1 : value);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.meme.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+/**
+ * 文字图层样式解析测试
+ */
+class TextLayerTest {
+
+    @Test
+    void resolveStyleDoesNotModifySharedStyle() {
+        TextStyle shared = new TextStyle();
+        shared.setFontSize(56);
+        TextLayer top = new TextLayer("上", shared);
+        top.setPosition("top");
+        top.setRotation(10);
+        TextLayer bottom = new TextLayer("下", shared);
+        bottom.setPosition("bottom");
+
+        TextStyle resolvedTop = top.resolveStyle();
+        TextStyle resolvedBottom = bottom.resolveStyle();
+
+        assertNotSame(shared, resolvedTop);
+        assertEquals("top", resolvedTop.getPosition());
+        assertEquals(10, resolvedTop.getRotation());
+        assertEquals(56, resolvedTop.getFontSize());
+        assertEquals("bottom", resolvedBottom.getPosition());
+        assertEquals(0, resolvedBottom.getRotation());
+        // 共用的样式对象保持请求中的原值
+        assertEquals("center", shared.getPosition());
+        assertEquals(0, shared.getRotation());
+    }
+}
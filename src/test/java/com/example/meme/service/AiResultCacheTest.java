@@ -0,0 +1,219 @@
+package com.example.meme.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AI 结果缓存测试：过期、内存层和磁盘层淘汰、磁盘索引和后台写入
+ */
+class AiResultCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private AiResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = newCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void hitFromMemoryThenFromDisk() {
+        cache.put("a", bytes(100, 1));
+        assertArrayEquals(bytes(100, 1), cache.get("a"));
+        assertEquals(1L, stats().get("memoryHits"));
+
+        AiResultCache restarted = newCache();
+        try {
+            assertArrayEquals(bytes(100, 1), restarted.get("a"));
+            assertEquals(1L, restarted.getStats().get("diskHits"));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void expiredEntriesAreMisses() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 0L);
+        cache.put("a", bytes(100, 1));
+        Thread.sleep(5);
+
+        assertNull(cache.get("a"));
+        assertEquals(1L, stats().get("misses"));
+        // 过期的磁盘文件在读取时删除，索引同步更新
+        assertFalse(Files.exists(cacheDir.resolve("a.bin")));
+        assertEquals(0L, stats().get("diskBytes"));
+    }
+
+    @Test
+    void expiredDiskFilesAreDroppedOnNextPut() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.put("old", bytes(100, 1));
+        // 模拟一小时前写入的文件：重启后从目录加载索引
+        Files.setLastModifiedTime(cacheDir.resolve("old.bin"),
+                FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        AiResultCache restarted = newCache();
+        ReflectionTestUtils.setField(restarted, "ttlSeconds", 60L);
+        try {
+            restarted.put("new", bytes(100, 2));
+            assertFalse(Files.exists(cacheDir.resolve("old.bin")));
+            assertTrue(Files.exists(cacheDir.resolve("new.bin")));
+            assertEquals(100L, restarted.getStats().get("diskBytes"));
+            assertEquals(1L, restarted.getStats().get("diskEvictions"));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void memoryEvictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(cache, "memoryMaxBytes", 250L);
+        cache.put("a", bytes(100, 1));
+        cache.put("b", bytes(100, 2));
+        // 访问 a 后 b 成为最久未使用
+        cache.get("a");
+        cache.put("c", bytes(100, 3));
+
+        assertEquals(1L, stats().get("memoryEvictions"));
+        assertEquals(200L, stats().get("memoryBytes"));
+        long diskHits = (long) stats().get("diskHits");
+        cache.get("a");
+        cache.get("c");
+        assertEquals(diskHits, stats().get("diskHits"));
+        // 被淘汰的 b 仍可从磁盘层读取
+        assertArrayEquals(bytes(100, 2), cache.get("b"));
+        assertEquals(diskHits + 1, stats().get("diskHits"));
+    }
+
+    @Test
+    void diskEvictsOldestWritesBeyondQuota() throws Exception {
+        ReflectionTestUtils.setField(cache, "memoryMaxBytes", 0L);
+        ReflectionTestUtils.setField(cache, "diskMaxBytes", 250L);
+        cache.put("a", bytes(100, 1));
+        cache.put("b", bytes(100, 2));
+        cache.put("c", bytes(100, 3));
+
+        assertEquals(1L, stats().get("diskEvictions"));
+        assertEquals(200L, stats().get("diskBytes"));
+        assertEquals(2, stats().get("diskEntries"));
+        assertNull(cache.get("a"));
+        assertArrayEquals(bytes(100, 2), cache.get("b"));
+        assertArrayEquals(bytes(100, 3), cache.get("c"));
+        assertEquals(200L, directoryBytes());
+
+        // 重新写入的键按新的写入时间排序
+        cache.put("b", bytes(100, 4));
+        cache.put("d", bytes(100, 5));
+        assertNull(cache.get("c"));
+        assertArrayEquals(bytes(100, 4), cache.get("b"));
+        assertEquals(200L, directoryBytes());
+    }
+
+    @Test
+    void diskIndexIsLoadedFromExistingFiles() throws Exception {
+        ReflectionTestUtils.setField(cache, "memoryMaxBytes", 0L);
+        cache.put("a", bytes(100, 1));
+        cache.put("b", bytes(100, 2));
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(cacheDir.resolve("a.bin"), FileTime.fromMillis(now - 2000));
+        Files.setLastModifiedTime(cacheDir.resolve("b.bin"), FileTime.fromMillis(now - 1000));
+
+        AiResultCache restarted = newCache();
+        ReflectionTestUtils.setField(restarted, "memoryMaxBytes", 0L);
+        ReflectionTestUtils.setField(restarted, "diskMaxBytes", 250L);
+        try {
+            restarted.put("c", bytes(100, 3));
+            assertNull(restarted.get("a"));
+            assertArrayEquals(bytes(100, 2), restarted.get("b"));
+            assertEquals(200L, restarted.getStats().get("diskBytes"));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void putLaterLoadsBytesOnBackgroundThread() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+        Thread[] loader = new Thread[1];
+        cache.putLater("a", () -> {
+            loader[0] = Thread.currentThread();
+            loaded.countDown();
+            return bytes(100, 1);
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertNotEquals(caller, loader[0]);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.get("a") == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertArrayEquals(bytes(100, 1), cache.get("a"));
+    }
+
+    @Test
+    void putLaterFailureIsNotCached() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        cache.putLater("a", () -> {
+            loaded.countDown();
+            throw new IOException("下载失败");
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        cache.shutdown();
+        assertNull(cache.get("a"));
+        assertEquals(0L, stats().get("puts"));
+    }
+
+    private AiResultCache newCache() {
+        AiResultCache created = new AiResultCache();
+        ReflectionTestUtils.setField(created, "dir", cacheDir.toString());
+        created.init();
+        return created;
+    }
+
+    private Map<String, Object> stats() {
+        return cache.getStats();
+    }
+
+    private long directoryBytes() throws IOException {
+        long total = 0;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                total += Files.size(file);
+            }
+        }
+        return total;
+    }
+
+    private static byte[] bytes(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.meme.service;
+
+import com.example.meme.model.GenerationStage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 相同请求合并测试：两个线程以相同的键同时请求，第二个请求合并到第一个
+ */
+class GenerationCoalescerTest {
+
+    private static final String KEY = "same-key";
+
+    private final GenerationCoalescer coalescer = new GenerationCoalescer();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void followerSharesLeaderResultAndStages() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        List<GenerationStage> followerStages = new CopyOnWriteArrayList<>();
+        Future<String>[] futures = startPair(listener -> {
+            runs.incrementAndGet();
+            listener.onStage(GenerationStage.UNDERSTOOD, null);
+            awaitFollower();
+            listener.onStage(GenerationStage.SYNTHESIZED, null);
+            return "https://example.com/result.png";
+        }, (stage, detail) -> followerStages.add(stage));
+
+        assertEquals("https://example.com/result.png", futures[0].get(5, TimeUnit.SECONDS));
+        assertEquals("https://example.com/result.png", futures[1].get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        // 合并进来时补发已发生的阶段，之后收到实时阶段
+        assertEquals(List.of(GenerationStage.UNDERSTOOD, GenerationStage.SYNTHESIZED), followerStages);
+        assertStats(1, 1);
+    }
+
+    @Test
+    void followerReceivesLeaderIOException() throws Exception {
+        IOException failure = new IOException("AI 生成失败");
+        Future<String>[] futures = startPair(listener -> {
+            awaitFollower();
+            throw failure;
+        }, GenerationListener.NONE);
+
+        assertSame(failure, causeOf(futures[0]));
+        assertSame(failure, causeOf(futures[1]));
+        assertStats(1, 1);
+    }
+
+    @Test
+    void followerIsReleasedWhenLeaderThrowsError() throws Exception {
+        OutOfMemoryError failure = new OutOfMemoryError("模拟解码大图时内存不足");
+        Future<String>[] futures = startPair(listener -> {
+            awaitFollower();
+            throw failure;
+        }, GenerationListener.NONE);
+
+        assertSame(failure, causeOf(futures[0]));
+        // 等待方不会一直阻塞，而是收到包装了原始 Error 的 IOException
+        Throwable followerFailure = causeOf(futures[1]);
+        assertInstanceOf(IOException.class, followerFailure);
+        assertSame(failure, followerFailure.getCause());
+        assertStats(1, 1);
+    }
+
+    @Test
+    void followerWaitIsBounded() throws Exception {
+        ReflectionTestUtils.setField(coalescer, "waitTimeoutSeconds", 1L);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String>[] futures = startPair(listener -> {
+            awaitFollower();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "late";
+        }, GenerationListener.NONE);
+
+        Throwable followerFailure = causeOf(futures[1]);
+        assertInstanceOf(IOException.class, followerFailure);
+        assertTrue(followerFailure.getMessage().contains("超时"));
+        release.countDown();
+        assertEquals("late", futures[0].get(5, TimeUnit.SECONDS));
+        assertStats(1, 1);
+    }
+
+    /**
+     * 先启动执行方，等它进入生成过程后再以相同的键启动合并方
+     */
+    @SuppressWarnings("unchecked")
+    private Future<String>[] startPair(GenerationCoalescer.Generation generation, GenerationListener followerListener)
+            throws InterruptedException {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> coalescer.execute(KEY, GenerationListener.NONE, listener -> {
+            leaderStarted.countDown();
+            return generation.run(listener);
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(() -> coalescer.execute(KEY, followerListener, listener -> {
+            throw new AssertionError("合并方不应执行生成");
+        }));
+        return new Future[]{leader, follower};
+    }
+
+    /**
+     * 执行方在合并方加入之前不结束，保证两个请求确实重叠
+     */
+    private void awaitFollower() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (((Number) coalescer.getStats().get("coalesced")).longValue() == 0) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("合并方没有加入");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static Throwable causeOf(Future<String> future) throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    private void assertStats(long executions, long coalesced) {
+        Map<String, Object> stats = coalescer.getStats();
+        assertEquals(executions, stats.get("executions"));
+        assertEquals(coalesced, stats.get("coalesced"));
+        assertEquals(0, stats.get("inFlight"));
+    }
+}
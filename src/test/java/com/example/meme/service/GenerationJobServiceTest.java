@@ -0,0 +1,51 @@
+package com.example.meme.service;
+
+import com.example.meme.model.EmotionType;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 异步生成任务的图库 URL 校验测试：不在图库白名单内的 URL 在提交时拒绝，不占用工作线程
+ */
+class GenerationJobServiceTest {
+
+    private final ImageGalleryService imageGalleryService = new ImageGalleryService();
+
+    @Test
+    void galleryHostsAreDownloadable() {
+        assertTrue(imageGalleryService.isDownloadable("https://pixabay.com/get/abc.jpg"));
+        assertTrue(imageGalleryService.isDownloadable("https://cdn.pixabay.com/photo/2024/01/01/cat.jpg"));
+        assertTrue(imageGalleryService.isDownloadable("http://CDN.Pixabay.com/photo/cat.jpg"));
+    }
+
+    @Test
+    void otherUrlsAreNotDownloadable() {
+        assertFalse(imageGalleryService.isDownloadable(null));
+        assertFalse(imageGalleryService.isDownloadable("http://169.254.169.254/latest/meta-data/"));
+        assertFalse(imageGalleryService.isDownloadable("http://localhost:8443/api/meme/metrics"));
+        assertFalse(imageGalleryService.isDownloadable("https://evilpixabay.com/cat.jpg"));
+        assertFalse(imageGalleryService.isDownloadable("https://pixabay.com.evil.example/cat.jpg"));
+        assertFalse(imageGalleryService.isDownloadable("https://user@pixabay.com/cat.jpg"));
+        assertFalse(imageGalleryService.isDownloadable("file:///etc/passwd"));
+        assertFalse(imageGalleryService.isDownloadable("ftp://cdn.pixabay.com/cat.jpg"));
+        assertFalse(imageGalleryService.isDownloadable("/output/meme.png"));
+    }
+
+    @Test
+    void submitRejectsNonGalleryUrlBeforeQueueing() {
+        GenerationJobService service = new GenerationJobService();
+        ReflectionTestUtils.setField(service, "imageGalleryService", imageGalleryService);
+
+        // 未初始化线程池：校验失败必须在提交到线程池之前发生
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> service.submit(
+                "http://169.254.169.254/latest/meta-data/", EmotionType.HAPPY, null, null, null));
+        assertEquals("只支持图库中的图片 URL", e.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> service.submit(" ", EmotionType.HAPPY, null, null, null));
+    }
+}
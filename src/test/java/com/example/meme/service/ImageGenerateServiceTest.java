@@ -0,0 +1,122 @@
+package com.example.meme.service;
+
+import com.example.meme.client.AiClient;
+import com.example.meme.model.EmotionType;
+import com.example.meme.model.ImageGenerateResult;
+import com.example.meme.model.ImageUnderstandResult;
+import com.example.meme.model.OutputFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * AI 结果缓存写入规则测试：模拟理解结果不写入；OSS 结果在后台写入且只下载一次；缓存命中时原样保存
+ */
+class ImageGenerateServiceTest {
+
+    private static final String OSS_URL = "https://bucket.oss-cn-beijing.aliyuncs.com/result.png";
+
+    private static final byte[] ORIGINAL = {1, 2, 3};
+
+    private final AiClient aiClient = mock(AiClient.class);
+
+    private final ImageStorageService imageStorageService = mock(ImageStorageService.class);
+
+    private final AiResultCache aiResultCache = mock(AiResultCache.class);
+
+    private final ImageGenerateService service = new ImageGenerateService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "aiClient", aiClient);
+        ReflectionTestUtils.setField(service, "imageStorageService", imageStorageService);
+        ReflectionTestUtils.setField(service, "aiResultCache", aiResultCache);
+        when(aiResultCache.isEnabled()).thenReturn(true);
+        when(aiClient.getImageModelSignature()).thenReturn("qwen-image-plus");
+        when(aiClient.synthesizeEmotionImage(any(), any()))
+                .thenReturn(new ImageGenerateResult(OSS_URL, "描述", "happy"));
+    }
+
+    @Test
+    void resultFromFallbackUnderstandingIsNeverCached() throws IOException {
+        ImageUnderstandResult fallback = new ImageUnderstandResult("模拟描述", "模拟文字");
+        fallback.setFallback(true);
+
+        service.generate(ORIGINAL, fallback, EmotionType.HAPPY, GenerationListener.NONE);
+
+        verify(aiResultCache, never()).put(anyString(), any());
+        verify(aiResultCache, never()).putLater(anyString(), any());
+        verify(imageStorageService, never()).load(anyString());
+    }
+
+    @Test
+    void remoteResultIsCachedInBackgroundAndDownloadedOnce() throws Exception {
+        byte[] png = png();
+        when(imageStorageService.load(OSS_URL)).thenReturn(png);
+
+        GeneratedImage generated = service.generate(ORIGINAL, new ImageUnderstandResult("描述", "文字"),
+                EmotionType.HAPPY, GenerationListener.NONE);
+
+        // 请求线程不下载，直接返回远程 URL
+        verify(imageStorageService, never()).load(anyString());
+        assertEquals(OSS_URL, generated.persist(OutputFormat.AUTO));
+
+        ArgumentCaptor<AiResultCache.BytesSource> source = ArgumentCaptor.forClass(AiResultCache.BytesSource.class);
+        String key = AiResultCache.key(ORIGINAL, EmotionType.HAPPY, "qwen-image-plus");
+        verify(aiResultCache).putLater(eq(key), source.capture());
+        verify(aiResultCache, never()).put(anyString(), any());
+
+        // 后台写入和后续解码共用一次下载
+        assertArrayEquals(png, source.getValue().load());
+        generated.getImage();
+        verify(imageStorageService, times(1)).load(OSS_URL);
+    }
+
+    @Test
+    void cacheHitIsSavedWithoutReencoding() throws Exception {
+        byte[] png = png();
+        when(aiResultCache.get(anyString())).thenReturn(png);
+        when(imageStorageService.saveEncoded(any(), anyString(), any())).thenReturn("/output/emotion_happy.png");
+
+        GeneratedImage cached = service.findCached(ORIGINAL, EmotionType.HAPPY);
+        assertEquals("/output/emotion_happy.png", cached.persist(OutputFormat.AUTO));
+
+        verify(imageStorageService).saveEncoded(png, "emotion_happy", OutputFormat.PNG);
+        verify(imageStorageService, never()).save(any(), anyString(), any());
+    }
+
+    @Test
+    void cacheHitIsReencodedWhenAnotherFormatIsRequested() throws Exception {
+        byte[] png = png();
+        when(aiResultCache.get(anyString())).thenReturn(png);
+
+        service.findCached(ORIGINAL, EmotionType.HAPPY).persist(OutputFormat.JPEG);
+
+        verify(imageStorageService).save(any(BufferedImage.class), eq("emotion_happy"), eq(OutputFormat.JPEG));
+        verify(imageStorageService, never()).saveEncoded(any(), anyString(), any());
+    }
+
+    private static byte[] png() throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.meme.service;
+
+import com.example.meme.model.EmotionImageResult;
+import com.example.meme.model.EmotionType;
+import com.example.meme.model.ImageUnderstandResult;
+import com.example.meme.model.OutputFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量生成测试：结果顺序、单个情绪失败的隔离、图片理解次数（共享、模拟结果时分别重试、全部命中缓存时跳过）
+ */
+class MemeServiceTest {
+
+    private static final byte[] IMAGE = {1, 2, 3};
+
+    private final ImageGenerateService imageGenerateService = mock(ImageGenerateService.class);
+
+    private final ImageStorageService imageStorageService = mock(ImageStorageService.class);
+
+    private final MemeService service = new MemeService();
+
+    private final MockMultipartFile file = new MockMultipartFile("image", "photo.png", "image/png", IMAGE);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "imageGenerateService", imageGenerateService);
+        ReflectionTestUtils.setField(service, "imageStorageService", imageStorageService);
+        ReflectionTestUtils.setField(service, "batchParallelism", 4);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void resultsFollowRequestOrderAndUnderstandOnce() throws Exception {
+        ImageUnderstandResult understood = new ImageUnderstandResult("描述", "文字");
+        when(imageGenerateService.understand(IMAGE)).thenReturn(understood);
+        // 第一个情绪最后完成
+        CountDownLatch othersDone = new CountDownLatch(2);
+        when(imageGenerateService.generate(eq(IMAGE), eq(understood), any(), any())).thenAnswer(invocation -> {
+            EmotionType emotionType = invocation.getArgument(2);
+            if (emotionType == EmotionType.HAPPY) {
+                assertTrue(othersDone.await(5, TimeUnit.SECONDS));
+            } else {
+                othersDone.countDown();
+            }
+            return remote(emotionType);
+        });
+
+        List<EmotionType> emotions = List.of(EmotionType.HAPPY, EmotionType.SAD, EmotionType.ANGRY);
+        List<EmotionImageResult> results = service.generateEmotionImages(file, emotions, null, null, OutputFormat.AUTO);
+
+        assertEquals(3, results.size());
+        for (int i = 0; i < emotions.size(); i++) {
+            assertEquals(emotions.get(i), results.get(i).getEmotionType());
+            assertTrue(results.get(i).isSuccess());
+            assertEquals(url(emotions.get(i)), results.get(i).getImageUrl());
+        }
+        verify(imageGenerateService, times(1)).understand(IMAGE);
+    }
+
+    @Test
+    void oneFailingEmotionDoesNotFailOthers() throws Exception {
+        ImageUnderstandResult understood = new ImageUnderstandResult("描述", "文字");
+        when(imageGenerateService.understand(IMAGE)).thenReturn(understood);
+        when(imageGenerateService.generate(eq(IMAGE), eq(understood), any(), any())).thenAnswer(invocation -> {
+            EmotionType emotionType = invocation.getArgument(2);
+            if (emotionType == EmotionType.SAD) {
+                throw new IOException("AI 未能生成图片，请稍后重试");
+            }
+            if (emotionType == EmotionType.ANGRY) {
+                throw new IllegalStateException("意外错误");
+            }
+            return remote(emotionType);
+        });
+
+        List<EmotionImageResult> results = service.generateEmotionImages(file,
+                List.of(EmotionType.HAPPY, EmotionType.SAD, EmotionType.ANGRY, EmotionType.CALM),
+                null, null, OutputFormat.AUTO);
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("生成表情图片失败: AI 未能生成图片，请稍后重试", results.get(1).getMessage());
+        assertFalse(results.get(2).isSuccess());
+        assertEquals(EmotionType.ANGRY, results.get(2).getEmotionType());
+        assertTrue(results.get(3).isSuccess());
+        assertEquals(url(EmotionType.CALM), results.get(3).getImageUrl());
+    }
+
+    @Test
+    void fallbackUnderstandingIsRetriedPerEmotion() throws Exception {
+        ImageUnderstandResult fallback = new ImageUnderstandResult("模拟描述", "模拟文字");
+        fallback.setFallback(true);
+        ImageUnderstandResult retried = new ImageUnderstandResult("描述", "文字");
+        when(imageGenerateService.understand(IMAGE)).thenReturn(fallback, retried);
+        when(imageGenerateService.generate(eq(IMAGE), any(), any(), any()))
+                .thenAnswer(invocation -> remote(invocation.getArgument(2)));
+
+        List<EmotionImageResult> results = service.generateEmotionImages(file,
+                List.of(EmotionType.HAPPY, EmotionType.SAD, EmotionType.ANGRY), null, null, OutputFormat.AUTO);
+
+        assertTrue(results.stream().allMatch(EmotionImageResult::isSuccess));
+        // 共享的一次 + 每个情绪各一次
+        verify(imageGenerateService, times(4)).understand(IMAGE);
+        verify(imageGenerateService, times(3)).generate(eq(IMAGE), eq(retried), any(), any());
+        verify(imageGenerateService, never()).generate(eq(IMAGE), eq(fallback), any(), any());
+    }
+
+    @Test
+    void allCachedBatchSkipsUnderstanding() throws Exception {
+        when(imageGenerateService.findCached(eq(IMAGE), any()))
+                .thenAnswer(invocation -> remote(invocation.getArgument(1)));
+
+        List<EmotionImageResult> results = service.generateEmotionImages(file,
+                List.of(EmotionType.HAPPY, EmotionType.SAD), null, null, OutputFormat.AUTO);
+
+        assertEquals(url(EmotionType.HAPPY), results.get(0).getImageUrl());
+        assertEquals(url(EmotionType.SAD), results.get(1).getImageUrl());
+        verify(imageGenerateService, never()).understand(any());
+        verify(imageGenerateService, never()).generate(any(), any(ImageUnderstandResult.class), any(), any());
+    }
+
+    @Test
+    void partlyCachedBatchUnderstandsOnceForMisses() throws Exception {
+        ImageUnderstandResult understood = new ImageUnderstandResult("描述", "文字");
+        when(imageGenerateService.understand(IMAGE)).thenReturn(understood);
+        when(imageGenerateService.findCached(IMAGE, EmotionType.HAPPY)).thenReturn(remote(EmotionType.HAPPY));
+        when(imageGenerateService.generate(eq(IMAGE), eq(understood), any(), any()))
+                .thenAnswer(invocation -> remote(invocation.getArgument(2)));
+
+        List<EmotionImageResult> results = service.generateEmotionImages(file,
+                List.of(EmotionType.HAPPY, EmotionType.SAD, EmotionType.ANGRY), null, null, OutputFormat.AUTO);
+
+        assertTrue(results.stream().allMatch(EmotionImageResult::isSuccess));
+        verify(imageGenerateService, times(1)).understand(IMAGE);
+        verify(imageGenerateService, never()).generate(any(), any(ImageUnderstandResult.class),
+                eq(EmotionType.HAPPY), any());
+    }
+
+    private GeneratedImage remote(EmotionType emotionType) {
+        return new GeneratedImage(url(emotionType), "emotion_" + emotionType.getEnglishName(), imageStorageService);
+    }
+
+    private static String url(EmotionType emotionType) {
+        return "https://bucket.oss-cn-beijing.aliyuncs.com/" + emotionType.getEnglishName() + ".png";
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.meme.util;
+
+import com.example.meme.model.OutputFormat;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图片编码测试：PNG8 调色板颜色数上限和透明度保留、自动模式的格式选择
+ */
+class ImageEncoderTest {
+
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8};
+
+    private final ImageEncoder encoder = new ImageEncoder();
+
+    @Test
+    void paletteHasAtMost256Colors() throws IOException {
+        BufferedImage image = gradient(200, 150);
+        for (boolean dither : new boolean[]{false, true}) {
+            BufferedImage indexed = PaletteQuantizer.quantize(image, PaletteQuantizer.MAX_COLORS, dither);
+            assertEquals(BufferedImage.TYPE_BYTE_INDEXED, indexed.getType());
+            IndexColorModel colorModel = (IndexColorModel) indexed.getColorModel();
+            assertTrue(colorModel.getMapSize() <= PaletteQuantizer.MAX_COLORS, "colors=" + colorModel.getMapSize());
+        }
+        // 配置的颜色数更少时以配置为准
+        IndexColorModel small = (IndexColorModel) PaletteQuantizer.quantize(image, 16, false).getColorModel();
+        assertTrue(small.getMapSize() <= 16, "colors=" + small.getMapSize());
+
+        BufferedImage decoded = decode(encode(image, OutputFormat.PNG8));
+        Set<Integer> colors = new HashSet<>();
+        for (int y = 0; y < decoded.getHeight(); y++) {
+            for (int x = 0; x < decoded.getWidth(); x++) {
+                colors.add(decoded.getRGB(x, y));
+            }
+        }
+        assertTrue(colors.size() <= PaletteQuantizer.MAX_COLORS, "colors=" + colors.size());
+    }
+
+    @Test
+    void transparencySurvivesPng8() throws IOException {
+        int width = 32;
+        int height = 32;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 8; y < 24; y++) {
+            for (int x = 8; x < 24; x++) {
+                image.setRGB(x, y, 0xFFE03020);
+            }
+        }
+        // 透明度很低的深色像素（如文字描边的抗锯齿边缘）
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, 4, 0x10000000);
+        }
+
+        BufferedImage indexed = PaletteQuantizer.quantize(image, PaletteQuantizer.MAX_COLORS, false);
+        int transparentIndex = indexed.getRaster().getSample(0, 0, 0);
+        int nearBlackIndex = indexed.getRaster().getSample(0, 4, 0);
+        assertNotEquals(transparentIndex, nearBlackIndex);
+
+        BufferedImage decoded = decode(encode(image, OutputFormat.PNG8));
+        assertEquals(0, decoded.getRGB(0, 0) >>> 24);
+        assertEquals(0, decoded.getRGB(width - 1, height - 1) >>> 24);
+        assertEquals(0x10, decoded.getRGB(0, 4) >>> 24);
+        assertEquals(0xFFE03020, decoded.getRGB(16, 16));
+    }
+
+    @Test
+    void transparencySurvivesPng8WithManyColors() throws IOException {
+        BufferedImage image = gradient(200, 150);
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 200; x++) {
+                image.setRGB(x, y, 0);
+            }
+        }
+        for (boolean dither : new boolean[]{false, true}) {
+            BufferedImage indexed = PaletteQuantizer.quantize(image, PaletteQuantizer.MAX_COLORS, dither);
+            for (int y = 0; y < 40; y++) {
+                for (int x = 0; x < 200; x++) {
+                    assertEquals(0, indexed.getRGB(x, y) >>> 24, "dither=" + dither + " x=" + x + " y=" + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void autoPicksJpegOnlyForOpaqueImages() throws IOException {
+        BufferedImage opaque = gradient(64, 64);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(OutputFormat.JPEG, encoder.encode(opaque, OutputFormat.AUTO, out));
+        assertStartsWith(JPEG_MAGIC, out.toByteArray());
+
+        BufferedImage translucent = gradient(64, 64);
+        translucent.setRGB(63, 63, 0xFE123456);
+        out = new ByteArrayOutputStream();
+        assertEquals(OutputFormat.PNG, encoder.encode(translucent, OutputFormat.AUTO, out));
+        assertStartsWith(PNG_MAGIC, out.toByteArray());
+
+        BufferedImage transparent = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        out = new ByteArrayOutputStream();
+        assertEquals(OutputFormat.PNG, encoder.encode(transparent, null, out));
+        assertStartsWith(PNG_MAGIC, out.toByteArray());
+
+        // 没有透明通道的图片类型一律视为不透明
+        BufferedImage rgb = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        out = new ByteArrayOutputStream();
+        assertEquals(OutputFormat.JPEG, encoder.encode(rgb, OutputFormat.AUTO, out));
+        assertStartsWith(JPEG_MAGIC, out.toByteArray());
+    }
+
+    private byte[] encode(BufferedImage image, OutputFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(format, encoder.encode(image, format, out));
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] bytes) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * 不透明的渐变加少量噪点，颜色格远多于 256 个
+     */
+    private static BufferedImage gradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / Math.max(1, width - 1);
+                int g = y * 255 / Math.max(1, height - 1);
+                int b = (x + y + random.nextInt(32)) & 0xFF;
+                image.setRGB(x, y, 0xFF000000 | (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static void assertStartsWith(byte[] prefix, byte[] bytes) {
+        assertTrue(bytes.length >= prefix.length);
+        for (int i = 0; i < prefix.length; i++) {
+            assertEquals(prefix[i], bytes[i], "byte " + i);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.meme.util;
+
+import com.example.meme.model.FilterType;
+import com.example.meme.service.FilterService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 像素缓冲池的并发借还和分配率测试
+ */
+class PixelBufferPoolTest {
+
+    private static final int[][] SIZES = {{64, 64}, {101, 37}, {128, 128}, {200, 150}};
+
+    /**
+     * 多线程随机借还（夹杂重复归还和非本池图片的归还）：
+     * 同一个数组不会同时借给两个调用方，借出时要求清空的区域全为 0，持有期间内容不被其他线程改写
+     */
+    @Test
+    void concurrentBorrowNeverSharesBuffers() throws Exception {
+        PixelBufferPool pool = new PixelBufferPool();
+        // 容量较小，同时覆盖淘汰路径
+        ReflectionTestUtils.setField(pool, "maxBytes", 512L * 1024);
+
+        int threads = 8;
+        int iterations = 5000;
+        Set<int[]> live = ConcurrentHashMap.newKeySet();
+        AtomicLong expectedIgnored = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        int[] size = SIZES[random.nextInt(SIZES.length)];
+                        BufferedImage image = pool.borrow(size[0], size[1], true);
+                        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                        assertTrue(live.add(data), "同一个数组同时借给了两个调用方");
+
+                        int visible = size[0] * size[1];
+                        for (int k = 0; k < visible; k++) {
+                            assertEquals(0, data[k], "借出的数组未清空");
+                        }
+                        int marker = seed * 1_000_003 + i;
+                        for (int k = 0; k < visible; k++) {
+                            data[k] = marker;
+                        }
+                        Thread.yield();
+                        for (int k = 0; k < visible; k++) {
+                            assertEquals(marker, data[k], "持有期间数组被其他调用方改写");
+                        }
+
+                        assertTrue(live.remove(data));
+                        pool.release(image);
+                        if (random.nextInt(8) == 0) {
+                            // 重复归还
+                            pool.release(image);
+                            expectedIgnored.incrementAndGet();
+                        }
+                        if (random.nextInt(8) == 0) {
+                            // 非本池创建、但数组长度恰好等于桶容量的图片
+                            pool.release(new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB));
+                            expectedIgnored.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(expectedIgnored.get(), pool.getStats().get("ignoredReleases"));
+        assertEquals((long) threads * iterations, pool.getStats().get("releases"));
+    }
+
+    /**
+     * 每个请求（滤镜 + 归还结果）分配的字节数：使用缓冲池时应远低于每次分配新数组
+     */
+    @Test
+    void pooledPathAllocatesLessPerRequest() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "当前 JVM 不支持按线程统计分配量");
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        BufferedImage input = new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB);
+        long unpooled = allocatedBytesPerRequest(threadBean, input, false);
+        long pooled = allocatedBytesPerRequest(threadBean, input, true);
+
+        // 不使用缓冲池时每个请求至少分配一个 512*512 的 int[]（1MB）
+        assertTrue(unpooled >= 512L * 512 * Integer.BYTES, "未使用缓冲池的分配量: " + unpooled);
+        assertTrue(pooled * 10 < unpooled, "每请求分配字节数 pooled=" + pooled + ", unpooled=" + unpooled);
+    }
+
+    private static long allocatedBytesPerRequest(com.sun.management.ThreadMXBean threadBean, BufferedImage input,
+                                                 boolean enabled) {
+        PixelBufferPool pool = new PixelBufferPool();
+        ReflectionTestUtils.setField(pool, "enabled", enabled);
+        FilterService filterService = new FilterService();
+        ReflectionTestUtils.setField(filterService, "bufferPool", pool);
+        filterService.init();
+        try {
+            // 预热：填充缓冲池、编译内核
+            for (int i = 0; i < 50; i++) {
+                pool.release(filterService.applyFilter(input, FilterType.WARM));
+            }
+            int requests = 200;
+            long threadId = Thread.currentThread().getId();
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < requests; i++) {
+                pool.release(filterService.applyFilter(input, FilterType.WARM));
+            }
+            return (threadBean.getThreadAllocatedBytes(threadId) - before) / requests;
+        } finally {
+            filterService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.meme.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文字换行测试：与原 ImageComposeService#wrapText（逐字符拼接、整行测宽）的结果对比
+ * 行宽都由当前字体实测得到，不依赖具体安装了哪些字体
+ */
+class TextWrapperTest {
+
+    private FontMetrics fm;
+
+    @BeforeEach
+    void setUp() {
+        Graphics2D g2d = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        g2d.setFont(new Font(Font.DIALOG, Font.PLAIN, 24));
+        fm = g2d.getFontMetrics();
+        g2d.dispose();
+    }
+
+    @Test
+    void pureCjkMatchesOldWrapper() {
+        String text = "今天也要加油努力工作好好吃饭早点睡觉明天又是新的一天我们一起向前走";
+        int charWidth = fm.charWidth('今');
+        for (int chars = 1; chars <= text.length() + 1; chars++) {
+            for (int extra : new int[]{0, charWidth / 2}) {
+                int maxWidth = chars * charWidth + extra;
+                assertEquals(oldWrap(text, fm, maxWidth), TextWrapper.wrap(text, fm, maxWidth),
+                        "maxWidth=" + maxWidth);
+            }
+        }
+    }
+
+    @Test
+    void latinBreaksAtWordBoundaries() {
+        String text = "hello world this is a meme caption";
+        int maxWidth = fm.stringWidth("hello world");
+
+        List<String> lines = TextWrapper.wrap(text, fm, maxWidth);
+
+        assertEquals(expectedGreedyWords(text, maxWidth), lines);
+        assertEquals(text, String.join(" ", lines));
+        for (String line : lines) {
+            assertTrue(fm.stringWidth(line) <= maxWidth, line);
+        }
+        // 原实现逐字符断行（会断在单词中间），换行位置不同，但除空格外内容一致
+        List<String> old = oldWrap(text, fm, maxWidth);
+        assertEquals(String.join("", old).replace(" ", ""), String.join("", lines).replace(" ", ""));
+    }
+
+    @Test
+    void wordWiderThanLineIsSplitLikeOldWrapper() {
+        String word = "supercalifragilisticexpialidocious";
+        int maxWidth = fm.stringWidth("superca");
+
+        List<String> lines = TextWrapper.wrap(word, fm, maxWidth);
+
+        assertEquals(oldWrap(word, fm, maxWidth), lines);
+        assertEquals(word, String.join("", lines));
+        for (String line : lines) {
+            assertTrue(fm.stringWidth(line) <= maxWidth, line);
+        }
+    }
+
+    @Test
+    void longWordAfterShortWordStartsOnNewLine() {
+        String text = "hi supercalifragilisticexpialidocious";
+        int maxWidth = fm.stringWidth("superca");
+
+        List<String> lines = TextWrapper.wrap(text, fm, maxWidth);
+
+        assertEquals("hi", lines.get(0));
+        assertEquals(oldWrap("supercalifragilisticexpialidocious", fm, maxWidth), lines.subList(1, lines.size()));
+    }
+
+    @Test
+    void newlinesForceBreaks() {
+        int wide = fm.stringWidth("第一行第二行第三行") * 2;
+        assertEquals(List.of("第一行", "第二行"), TextWrapper.wrap("第一行\n第二行", fm, wide));
+        assertEquals(List.of("第一行", "第二行"), TextWrapper.wrap("第一行\r\n第二行", fm, wide));
+        assertEquals(List.of("第一行", "", "第三行"), TextWrapper.wrap("第一行\n\n第三行", fm, wide));
+        assertEquals(List.of("first line", "second"), TextWrapper.wrap("first line  \r\nsecond", fm, wide));
+        for (String line : TextWrapper.wrap("第一行\r\n第二行\n第三行", fm, wide)) {
+            assertFalse(line.contains("\n") || line.contains("\r"), line);
+        }
+    }
+
+    @Test
+    void emptyTextIsOneEmptyLine() {
+        assertEquals(oldWrap("", fm, 100), TextWrapper.wrap("", fm, 100));
+        assertEquals(List.of(""), TextWrapper.wrap("", fm, 100));
+    }
+
+    @Test
+    void closingPunctuationDoesNotStartLine() {
+        String text = "今天天气真好，我们出去玩吧。";
+        int charWidth = fm.charWidth('今');
+        for (int chars = 2; chars <= text.length(); chars++) {
+            for (String line : TextWrapper.wrap(text, fm, chars * charWidth)) {
+                assertFalse(line.startsWith("，") || line.startsWith("。"), line);
+            }
+        }
+    }
+
+    @Test
+    void concurrentWrapsAgreeWithSequentialResult() throws Exception {
+        Graphics2D g2d = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        // 新字号，宽度表从空开始并发填充
+        g2d.setFont(new Font(Font.DIALOG, Font.BOLD, 31));
+        FontMetrics fresh = g2d.getFontMetrics();
+        g2d.dispose();
+        String text = "并发换行测试 mixed 中英文 caption 检查宽度表 supercalifragilistic 结果一致";
+        int maxWidth = fresh.stringWidth("并发换行测试");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<List<String>>> tasks = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                tasks.add(() -> TextWrapper.wrap(text, fresh, maxWidth));
+            }
+            List<Future<List<String>>> results = executor.invokeAll(tasks);
+            List<String> expected = TextWrapper.wrap(text, fresh, maxWidth);
+            for (Future<List<String>> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 只在空格处断开的贪心换行（拉丁文本的预期结果）
+     */
+    private List<String> expectedGreedyWords(String text, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        String current = "";
+        for (String word : text.split(" ")) {
+            String candidate = current.isEmpty() ? word : current + " " + word;
+            if (fm.stringWidth(candidate) <= maxWidth || current.isEmpty()) {
+                current = candidate;
+            } else {
+                lines.add(current);
+                current = word;
+            }
+        }
+        lines.add(current);
+        return lines;
+    }
+
+    /**
+     * 原 ImageComposeService#wrapText 的实现
+     */
+    private static List<String> oldWrap(String text, FontMetrics fm, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        if (fm.stringWidth(text) <= maxWidth) {
+            lines.add(text);
+            return lines;
+        }
+        StringBuilder currentLine = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            String testLine = currentLine.toString() + c;
+            if (fm.stringWidth(testLine) <= maxWidth) {
+                currentLine.append(c);
+            } else {
+                if (currentLine.length() > 0) {
+                    lines.add(currentLine.toString());
+                    currentLine = new StringBuilder(String.valueOf(c));
+                } else {
+                    currentLine.append(c);
+                }
+            }
+        }
+        if (currentLine.length() > 0) {
+            lines.add(currentLine.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.meme.filter.vector;
+
+import com.example.meme.filter.ColorMatrix;
+import com.example.meme.filter.KernelAccelerator;
+import com.example.meme.filter.LutKernel;
+import com.example.meme.filter.PixelKernel;
+import com.example.meme.filter.SaturateKernel;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 jdk.incubator.vector 的滤镜加速器
+ * 颜色矩阵（黑白、怀旧及包含它们的滤镜链）按通道拆包后多通道并行计算，
+ * 浮点乘加顺序与标量实现相同且不使用 FMA，因此输出逐位一致；
+ * 饱和度内核为纯整数运算，向量化实现与标量实现同样逐位一致
+ */
+public class VectorKernelAccelerator implements KernelAccelerator {
+
+    /**
+     * 双精度向量使用首选宽度，整型向量取相同通道数，便于 int 与 double 之间一对一转换
+     */
+    static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class,
+            VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    public VectorKernelAccelerator() {
+        // 提前触发模块链接，缺少 jdk.incubator.vector 时在加载阶段即失败
+        if (INTS.length() != DOUBLES.length()) {
+            throw new IllegalStateException("向量通道数不匹配");
+        }
+    }
+
+    @Override
+    public PixelKernel accelerate(PixelKernel kernel) {
+        if (kernel instanceof SaturateKernel) {
+            return new SaturateVectorKernel((SaturateKernel) kernel);
+        }
+        if (kernel instanceof LutKernel) {
+            LutKernel lut = (LutKernel) kernel;
+            // 仅加速不带前置表的矩阵内核，纯查找表内核的标量实现已足够快
+            if (lut.getMatrix() != null && lut.getPre() == null) {
+                return new MatrixKernel(lut);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 颜色矩阵 + 查找表的向量化内核
+     */
+    static final class MatrixKernel implements PixelKernel {
+
+        private final ColorMatrix matrix;
+        private final double[] c;
+        private final byte[] red;
+        private final byte[] green;
+        private final byte[] blue;
+
+        MatrixKernel(LutKernel scalar) {
+            this.matrix = scalar.getMatrix();
+            this.c = matrix.getCoefficients();
+            this.red = scalar.getRed();
+            this.green = scalar.getGreen();
+            this.blue = scalar.getBlue();
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height, int rowStart, int rowEnd) {
+            int lanes = INTS.length();
+            int start = rowStart * width;
+            int end = rowEnd * width;
+            int upper = start + INTS.loopBound(end - start);
+            boolean uniform = matrix.isUniformRows();
+            int[] outR = new int[lanes];
+            int[] outG = new int[lanes];
+            int[] outB = new int[lanes];
+
+            int i = start;
+            for (; i < upper; i += lanes) {
+                IntVector p = IntVector.fromArray(INTS, src, i);
+                DoubleVector r = toDouble(p.lanewise(VectorOperators.LSHR, 16).and(0xFF));
+                DoubleVector g = toDouble(p.lanewise(VectorOperators.LSHR, 8).and(0xFF));
+                DoubleVector b = toDouble(p.and(0xFF));
+
+                row(r, g, b, 0).intoArray(outR, 0);
+                if (uniform) {
+                    System.arraycopy(outR, 0, outG, 0, lanes);
+                    System.arraycopy(outR, 0, outB, 0, lanes);
+                } else {
+                    row(r, g, b, 1).intoArray(outG, 0);
+                    row(r, g, b, 2).intoArray(outB, 0);
+                }
+
+                for (int k = 0; k < lanes; k++) {
+                    dst[i + k] = (src[i + k] & 0xFF000000)
+                            | ((red[outR[k]] & 0xFF) << 16)
+                            | ((green[outG[k]] & 0xFF) << 8)
+                            | (blue[outB[k]] & 0xFF);
+                }
+            }
+
+            // 剩余不足一个向量的像素交给标量实现
+            if (i < end) {
+                applyTail(src, dst, i, end);
+            }
+        }
+
+        /**
+         * 计算矩阵的一行：(c0*r + c1*g) + c2*b，截断取整后限制在 0-255
+         */
+        private IntVector row(DoubleVector r, DoubleVector g, DoubleVector b, int row) {
+            int base = row * 3;
+            DoubleVector sum = r.mul(c[base]).add(g.mul(c[base + 1])).add(b.mul(c[base + 2]));
+            IntVector value = (IntVector) sum.convertShape(VectorOperators.D2I, INTS, 0);
+            return value.max(0).min(255);
+        }
+
+        private static DoubleVector toDouble(IntVector v) {
+            return (DoubleVector) v.convertShape(VectorOperators.I2D, DOUBLES, 0);
+        }
+
+        private void applyTail(int[] src, int[] dst, int from, int to) {
+            for (int i = from; i < to; i++) {
+                int p = src[i];
+                int r = (p >> 16) & 0xFF;
+                int g = (p >> 8) & 0xFF;
+                int b = p & 0xFF;
+                int mr = matrix.apply(0, r, g, b);
+                int mg = matrix.isUniformRows() ? mr : matrix.apply(1, r, g, b);
+                int mb = matrix.isUniformRows() ? mr : matrix.apply(2, r, g, b);
+                dst[i] = (p & 0xFF000000)
+                        | ((red[mr] & 0xFF) << 16)
+                        | ((green[mg] & 0xFF) << 8)
+                        | (blue[mb] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * 饱和度的向量化内核，整型通道数取首选宽度
+     */
+    static final class SaturateVectorKernel implements PixelKernel {
+
+        private static final VectorSpecies<Integer> LANES = IntVector.SPECIES_PREFERRED;
+
+        private final SaturateKernel scalar;
+        private final int strength;
+
+        SaturateVectorKernel(SaturateKernel scalar) {
+            this.scalar = scalar;
+            this.strength = scalar.getStrengthQ12();
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int width, int height, int rowStart, int rowEnd) {
+            int start = rowStart * width;
+            int end = rowEnd * width;
+            int upper = start + LANES.loopBound(end - start);
+
+            int i = start;
+            for (; i < upper; i += LANES.length()) {
+                IntVector p = IntVector.fromArray(LANES, src, i);
+                IntVector r = p.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+                IntVector g = p.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+                IntVector b = p.and(0xFF);
+                IntVector max = r.max(g).max(b);
+                IntVector chroma = max.sub(r.min(g).min(b)).max(1);
+                IntVector scaled = chroma.mul(strength)
+                        .min(max.lanewise(VectorOperators.LSHL, SaturateKernel.STRENGTH_BITS));
+                IntVector divisor = chroma.lanewise(VectorOperators.LSHL, SaturateKernel.STRENGTH_BITS);
+                IntVector half = divisor.lanewise(VectorOperators.ASHR, 1);
+
+                IntVector out = p.and(0xFF000000)
+                        .or(scale(r, max, scaled, divisor, half).lanewise(VectorOperators.LSHL, 16))
+                        .or(scale(g, max, scaled, divisor, half).lanewise(VectorOperators.LSHL, 8))
+                        .or(scale(b, max, scaled, divisor, half));
+                out.intoArray(dst, i);
+            }
+
+            // 剩余不足一个向量的像素以宽度 1 的视图交给标量实现
+            if (i < end) {
+                scalar.apply(src, dst, 1, end, i, end);
+            }
+        }
+
+        /**
+         * C' = V - ((V - C) * scaled + half) / divisor，与标量实现相同的整数运算
+         */
+        private static IntVector scale(IntVector channel, IntVector max, IntVector scaled,
+                                       IntVector divisor, IntVector half) {
+            return max.sub(max.sub(channel).mul(scaled).add(half).lanewise(VectorOperators.DIV, divisor));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.meme.filter.vector;
+
+import com.example.meme.filter.FilterKernels;
+import com.example.meme.filter.PixelKernel;
+import com.example.meme.model.FilterChain;
+import com.example.meme.model.FilterType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 向量化内核与标量内核的一致性测试（仅在 vector profile 下编译运行：mvn -Pvector test）
+ * 宽度取奇数，使每行和每个行区间都留下不足一个向量的尾部像素
+ */
+class VectorKernelAcceleratorTest {
+
+    private static final int[][] SIZES = {{1, 1}, {7, 3}, {13, 5}, {37, 11}, {101, 9}};
+
+    private static final double[] INTENSITIES = {0.35, 1.0, 1.75};
+
+    private static final String[] CHAINS = {
+            "grayscale,warm",
+            "sepia,contrast:1.5",
+            "bright,grayscale",
+            "saturate,sepia:0.5",
+            "warm,saturate:2,cool"
+    };
+
+    private final VectorKernelAccelerator accelerator = new VectorKernelAccelerator();
+
+    @Test
+    void everyFilterTypeMatchesScalar() {
+        int accelerated = 0;
+        for (FilterType type : FilterType.values()) {
+            for (double intensity : INTENSITIES) {
+                PixelKernel scalar = FilterKernels.forType(type, intensity);
+                if (scalar == null) {
+                    continue;
+                }
+                PixelKernel vector = accelerator.accelerate(scalar);
+                if (vector == null) {
+                    // 不支持加速的内核仍走标量实现
+                    continue;
+                }
+                accelerated++;
+                assertSameOutput(type + ":" + intensity, scalar, vector);
+            }
+        }
+        // 黑白、怀旧（矩阵内核）和高饱和在每个强度下都应被加速
+        assertTrue(accelerated >= 3 * INTENSITIES.length, "加速的内核数量: " + accelerated);
+    }
+
+    @Test
+    void fusedChainsMatchScalar() {
+        for (String code : CHAINS) {
+            List<PixelKernel> kernels = FilterKernels.compileChain(FilterChain.parse(code));
+            for (PixelKernel scalar : kernels) {
+                PixelKernel vector = accelerator.accelerate(scalar);
+                if (vector != null) {
+                    assertSameOutput(code, scalar, vector);
+                }
+            }
+        }
+    }
+
+    private static void assertSameOutput(String name, PixelKernel scalar, PixelKernel vector) {
+        Random random = new Random(name.hashCode());
+        for (int[] size : SIZES) {
+            int width = size[0];
+            int height = size[1];
+            int[] src = new int[width * height];
+            for (int i = 0; i < src.length; i++) {
+                src[i] = random.nextInt();
+            }
+            String label = name + " @ " + width + "x" + height;
+
+            int[] expected = new int[src.length];
+            int[] actual = new int[src.length];
+            scalar.apply(src, expected, width, height, 0, height);
+            vector.apply(src, actual, width, height, 0, height);
+            assertArrayEquals(expected, actual, label);
+
+            // 按行区间分段执行（与并行条带相同），每段都有自己的尾部
+            int[] striped = new int[src.length];
+            for (int row = 0; row < height; row += 2) {
+                vector.apply(src, striped, width, height, row, Math.min(height, row + 2));
+            }
+            assertArrayEquals(expected, striped, label + "（分段）");
+        }
+    }
+}